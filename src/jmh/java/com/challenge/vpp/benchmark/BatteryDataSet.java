@@ -0,0 +1,94 @@
+package com.challenge.vpp.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryRepository;
+import com.challenge.vpp.service.BatteryCapacitySketches;
+import com.challenge.vpp.service.BatteryMetrics;
+import com.challenge.vpp.service.BatteryRangeIndex;
+import com.challenge.vpp.service.BatteryServiceImpl;
+import com.challenge.vpp.service.BatteryStatisticsCache;
+import com.challenge.vpp.service.BatterySummarySnapshots;
+import com.challenge.vpp.service.BatteryWriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+final class BatteryDataSet {
+    static final int MIN_POSTCODE = 1000;
+    static final int MAX_POSTCODE = 9999;
+
+    static {
+        // Without Spring Boot the forked JVM falls back to console DEBUG logging, which would dominate the timings
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    private BatteryDataSet() {
+    }
+
+    static List<Battery> generate(int size) {
+        Random random = new Random(42);
+        List<Battery> batteries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Battery battery = Battery.builder()
+                    .name("Battery" + i)
+                    .postcode(MIN_POSTCODE + random.nextInt(MAX_POSTCODE - MIN_POSTCODE + 1))
+                    .wattCapacity(100 + random.nextInt(100_000))
+                    .build();
+            battery.setId((long) i + 1);
+            batteries.add(battery);
+        }
+        return batteries;
+    }
+
+    static BatteryServiceImpl service(List<Battery> batteries) {
+        return service(batteries, Integer.MAX_VALUE);
+    }
+
+    static BatteryServiceImpl service(List<Battery> batteries, int parallelThreshold) {
+        BatteryRepository repository = repository(batteries);
+        BatteryRangeIndex index = new BatteryRangeIndex(repository, true, parallelThreshold, 0, 4096);
+        index.rebuild();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BatteryStatisticsCache cache = new BatteryStatisticsCache(meterRegistry, false, 0, Duration.ZERO);
+        BatteryCapacitySketches sketches = new BatteryCapacitySketches(repository, true, 2);
+        BatterySummarySnapshots snapshots = new BatterySummarySnapshots(repository, meterRegistry, Duration.ofSeconds(10));
+        BatteryMetrics metrics = new BatteryMetrics(meterRegistry);
+        ApplicationEventPublisher events = event -> {
+        };
+        // Disabled, so the buffer never starts its flusher or opens a transaction
+        BatteryWriteBehindBuffer writeBehind = new BatteryWriteBehindBuffer(repository, events, metrics, null,
+                false, 500, Duration.ofMillis(10), 10_000, Duration.ofSeconds(5), Duration.ofSeconds(30));
+        return new BatteryServiceImpl(repository, index, cache, sketches, snapshots, writeBehind, metrics, events);
+    }
+
+    // Only the calls the benchmarks reach are implemented; anything else fails loudly
+    @SuppressWarnings("unchecked")
+    private static BatteryRepository repository(List<Battery> batteries) {
+        return (BatteryRepository) Proxy.newProxyInstance(BatteryRepository.class.getClassLoader(),
+                new Class<?>[]{BatteryRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "scanOrderedByPostcode" -> {
+                        batteries.stream()
+                                .sorted(Comparator.comparingInt(Battery::getPostcode).thenComparing(Battery::getId))
+                                .forEach((Consumer<Battery>) args[0]);
+                        yield null;
+                    }
+                    case "findAll" -> new PageImpl<>(batteries, (Pageable) args[0], batteries.size());
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "BatteryRepository(" + batteries.size() + " batteries)";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,64 @@
+package com.challenge.vpp.benchmark;
+
+import com.challenge.vpp.dto.BatteryStatisticsResponse;
+import com.challenge.vpp.service.BatteryServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class RangeStatisticsBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    // Share of the postcode space a query covers
+    @Param({"0.01", "0.25"})
+    private double window;
+
+    // Integer.MAX_VALUE keeps every query on the calling thread
+    @Param({"2147483647", "200000"})
+    private int parallelThreshold;
+
+    private BatteryServiceImpl batteryService;
+    private int from;
+    private int to;
+
+    @Setup
+    public void setUp() {
+        batteryService = BatteryDataSet.service(BatteryDataSet.generate(size), parallelThreshold);
+        int span = (int) ((BatteryDataSet.MAX_POSTCODE - BatteryDataSet.MIN_POSTCODE) * window);
+        from = 5000 - span / 2;
+        to = from + span;
+    }
+
+    @Benchmark
+    public BatteryStatisticsResponse batteriesInRange() {
+        return batteryService.getBatteriesInRange(from, to, null, null, null, 0);
+    }
+
+    @Benchmark
+    public BatteryStatisticsResponse batteriesInRangeWithCapacity() {
+        return batteryService.getBatteriesInRange(from, to, 25_000L, 75_000L, null, 0);
+    }
+
+    @Benchmark
+    public BatteryStatisticsResponse statisticsInRange() {
+        return batteryService.getStatisticsInRange(from, to, null, null);
+    }
+}
@@ -0,0 +1,47 @@
+package com.challenge.vpp.benchmark;
+
+import com.challenge.vpp.dto.BatteryResponse;
+import com.challenge.vpp.service.BatteryServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.concurrent.TimeUnit;
+
+// Drives toBatteryResponse through getAllBatteries, which maps every entity of the page
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ResponseMappingBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private BatteryServiceImpl batteryService;
+    private Pageable pageable;
+
+    @Setup
+    public void setUp() {
+        batteryService = BatteryDataSet.service(BatteryDataSet.generate(size));
+        pageable = PageRequest.of(0, size);
+    }
+
+    @Benchmark
+    public Page<BatteryResponse> toBatteryResponse() {
+        return batteryService.getAllBatteries(pageable);
+    }
+}
@@ -0,0 +1,61 @@
+package com.challenge.vpp.benchmark;
+
+import com.challenge.vpp.dto.BatteryStatisticsResponse;
+import com.challenge.vpp.model.Battery;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class StatisticsSerializationBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private BatteryStatisticsResponse response;
+    // ObjectMapper.writeValue closes its target, which OutputStream.nullOutputStream() refuses to be written after
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        response = BatteryStatisticsResponse.builder()
+                .batteries(BatteryDataSet.generate(size).stream().map(Battery::getName).sorted().toList())
+                .totalWattCapacity(50_000L * size)
+                .averageWattCapacity(50_000.0)
+                .build();
+    }
+
+    @Benchmark
+    public void serializeStatistics() throws IOException {
+        objectMapper.writeValue(sink, response);
+    }
+}
@@ -0,0 +1,114 @@
+package com.challenge.vpp.aspect;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+// Renders request arguments and responses for the access log, stopping at a length bound instead of building the
+// whole toString first, so a bulk request costs about as much to log as a single battery
+final class AccessLogRenderer {
+
+    private static final String DTO_PACKAGE = "com.challenge.vpp.dto.";
+    private static final String ELLIPSIS = "...";
+    private static final int MAX_DEPTH = 4;
+
+    private final StringBuilder out = new StringBuilder();
+    private final int maxLength;
+
+    private AccessLogRenderer(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    static String render(Object value, int maxLength) {
+        AccessLogRenderer renderer = new AccessLogRenderer(maxLength);
+        renderer.append(value, 0);
+        if (renderer.out.length() > maxLength) {
+            renderer.out.setLength(maxLength);
+            renderer.out.append(ELLIPSIS);
+        }
+        return renderer.out.toString();
+    }
+
+    // Rendered only if the message is actually formatted, so a filtered event costs nothing
+    static Object lazy(Object value, int maxLength) {
+        return new Object() {
+            @Override
+            public String toString() {
+                return render(value, maxLength);
+            }
+        };
+    }
+
+    private boolean full() {
+        return out.length() > maxLength;
+    }
+
+    private void append(Object value, int depth) {
+        if (full()) {
+            return;
+        }
+        if (value == null || value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                || value instanceof Enum<?>) {
+            appendBounded(String.valueOf(value));
+        } else if (value instanceof Object[] array) {
+            appendElements(Arrays.asList(array), array.length, depth);
+        } else if (value instanceof Collection<?> collection) {
+            appendElements(collection, collection.size(), depth);
+        } else if (value instanceof Map<?, ?> map) {
+            appendElements(map.entrySet(), map.size(), depth);
+        } else if (value instanceof Map.Entry<?, ?> entry) {
+            append(entry.getKey(), depth + 1);
+            out.append('=');
+            append(entry.getValue(), depth + 1);
+        } else if (value instanceof ResponseEntity<?> response) {
+            out.append(response.getStatusCode().value()).append(' ');
+            append(response.getBody(), depth + 1);
+        } else if (depth < MAX_DEPTH && value.getClass().getName().startsWith(DTO_PACKAGE)) {
+            appendFields(value, depth);
+        } else {
+            appendBounded(value.toString());
+        }
+    }
+
+    private void appendElements(Iterable<?> elements, int size, int depth) {
+        out.append("[size=").append(size);
+        Iterator<?> iterator = elements.iterator();
+        String separator = ": ";
+        while (iterator.hasNext() && !full()) {
+            out.append(separator);
+            append(iterator.next(), depth + 1);
+            separator = ", ";
+        }
+        out.append(']');
+    }
+
+    private void appendFields(Object value, int depth) {
+        out.append(value.getClass().getSimpleName()).append('(');
+        String[] separator = {""};
+        ReflectionUtils.doWithFields(value.getClass(), field -> {
+            if (full()) {
+                return;
+            }
+            ReflectionUtils.makeAccessible(field);
+            out.append(separator[0]).append(field.getName()).append('=');
+            append(field.get(value), depth + 1);
+            separator[0] = ", ";
+        }, AccessLogRenderer::isInstanceField);
+        out.append(')');
+    }
+
+    private void appendBounded(String text) {
+        int room = maxLength - out.length() + 1;
+        out.append(text, 0, Math.min(text.length(), Math.max(room, 0)));
+    }
+
+    private static boolean isInstanceField(Field field) {
+        return !Modifier.isStatic(field.getModifiers()) && !field.isSynthetic();
+    }
+}
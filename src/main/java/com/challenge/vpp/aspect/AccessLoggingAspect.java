@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
@@ -11,6 +12,7 @@ import java.util.Arrays;
 @Slf4j
 @Aspect
 @Component
+@ConditionalOnProperty(name = "vpp.access-log.mode", havingValue = "full", matchIfMissing = true)
 public class AccessLoggingAspect {
 
     private static final int MAX_LENGTH = 1000;
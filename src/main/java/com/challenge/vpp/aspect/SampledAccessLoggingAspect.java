@@ -0,0 +1,61 @@
+package com.challenge.vpp.aspect;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// One logfmt line per sampled request on the "access" logger, which logback-spring.xml hands to a bounded
+// asynchronous appender; failed requests are always logged
+@Aspect
+@Component
+@ConditionalOnProperty(name = "vpp.access-log.mode", havingValue = "sampled")
+public class SampledAccessLoggingAspect {
+
+    private static final Logger log = LoggerFactory.getLogger("com.challenge.vpp.access");
+
+    private final double sampleRate;
+    private final int maxLength;
+
+    public SampledAccessLoggingAspect(@Value("${vpp.access-log.sample-rate:0.01}") double sampleRate,
+                                      @Value("${vpp.access-log.max-length:1000}") int maxLength) {
+        this.sampleRate = sampleRate;
+        this.maxLength = maxLength;
+    }
+
+    @Around("com.challenge.vpp.aspect.AccessLoggingAspect.requestMapping()")
+    Object around(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!log.isInfoEnabled()) {
+            return joinPoint.proceed();
+        }
+        boolean sampled = ThreadLocalRandom.current().nextDouble() < sampleRate;
+        long start = System.nanoTime();
+        Object returning;
+        try {
+            returning = joinPoint.proceed();
+        } catch (Throwable throwing) {
+            log(joinPoint, start, "error", throwing.getMessage());
+            throw throwing;
+        }
+        if (sampled) {
+            log(joinPoint, start, "ok", returning);
+        }
+        return returning;
+    }
+
+    private void log(ProceedingJoinPoint joinPoint, long start, String outcome, Object result) {
+        Signature signature = joinPoint.getSignature();
+        log.info("handler={}.{} outcome={} durationMs={} args={} result={}",
+                signature.getDeclaringType().getSimpleName(), signature.getName(), outcome,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                AccessLogRenderer.lazy(joinPoint.getArgs(), maxLength), AccessLogRenderer.lazy(result, maxLength));
+    }
+}
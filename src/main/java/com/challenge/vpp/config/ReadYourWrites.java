@@ -0,0 +1,48 @@
+package com.challenge.vpp.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// The write a read on this thread has to see, as epoch millis: a caller's own last write for the requests it sends
+// with the read-after token, and every write of this instance for reads that refill a shared cache. Replica routing
+// sends such a read to a replica only once a health check showed it has replayed up to that time
+public final class ReadYourWrites {
+
+    public static final String HEADER = "X-Vpp-Read-After";
+
+    private static final ThreadLocal<Long> READ_AFTER = new ThreadLocal<>();
+    private static final AtomicLong LAST_WRITE = new AtomicLong();
+
+    private ReadYourWrites() {
+    }
+
+    public static <T> T readAfterLastWrite(Supplier<T> read) {
+        Long previous = READ_AFTER.get();
+        long required = Math.max(previous != null ? previous : 0, LAST_WRITE.get());
+        if (required == 0) {
+            return read.get();
+        }
+        READ_AFTER.set(required);
+        try {
+            return read.get();
+        } finally {
+            readAfter(previous);
+        }
+    }
+
+    static Long readAfter() {
+        return READ_AFTER.get();
+    }
+
+    static void readAfter(Long writtenAt) {
+        if (writtenAt != null) {
+            READ_AFTER.set(writtenAt);
+        } else {
+            READ_AFTER.remove();
+        }
+    }
+
+    static void written(long writtenAt) {
+        LAST_WRITE.accumulateAndGet(writtenAt, Math::max);
+    }
+}
@@ -0,0 +1,53 @@
+package com.challenge.vpp.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.Set;
+
+// A successful write answers with the read-after token; a caller that sends it back reads from the primary until a
+// replica has caught up with that write. Callers without the token read from any healthy replica
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final Set<String> READS = Set.of(HttpMethod.GET.name(), HttpMethod.HEAD.name(),
+            HttpMethod.OPTIONS.name());
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ReadYourWrites.readAfter(readAfter(request.getHeader(ReadYourWrites.HEADER)));
+        try {
+            if (READS.contains(request.getMethod())) {
+                chain.doFilter(request, response);
+                return;
+            }
+            // The header goes out with the body, so a write's response is held until its transaction has committed
+            ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+            chain.doFilter(request, wrapper);
+            if (wrapper.getStatus() < 400) {
+                wrapper.setHeader(ReadYourWrites.HEADER, Long.toString(System.currentTimeMillis()));
+            }
+            wrapper.copyBodyToResponse();
+        } finally {
+            ReadYourWrites.readAfter(null);
+        }
+    }
+
+    // A malformed token is ignored rather than failing the read
+    private static Long readAfter(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(header.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.challenge.vpp.config;
+
+import com.challenge.vpp.event.BatteryChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Target for read-only connections: round-robin over replicas that passed the last health check, and the primary
+// while none did or none has replayed the write the read has to see (ReadYourWrites)
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements SmartLifecycle, AutoCloseable {
+
+    // An idle replica that replayed everything it received is current, however old its last replayed transaction is
+    private static final String LAG_SQL = """
+            SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE extract(epoch FROM now() - pg_last_xact_replay_timestamp()) END""";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Duration maxLag;
+    private final Duration healthCheckInterval;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter primaryReads;
+    private final Counter replicaReads;
+    private ScheduledExecutorService healthCheck;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration maxLag,
+                                    Duration healthCheckInterval, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.maxLag = maxLag;
+        this.healthCheckInterval = healthCheckInterval;
+        for (DataSource dataSource : replicas) {
+            Replica replica = new Replica("replica-" + (this.replicas.size() + 1), dataSource);
+            this.replicas.add(replica);
+            Gauge.builder("vpp.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .description("Whether the replica takes read-only connections")
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+            Gauge.builder("vpp.datasource.replica.lag", replica, r -> r.lagSeconds)
+                    .description("Replication lag measured by the last health check")
+                    .tag("replica", replica.name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+        this.primaryReads = readConnections(meterRegistry, "primary");
+        this.replicaReads = readConnections(meterRegistry, "replica");
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+        private volatile double lagSeconds;
+        // Epoch millis up to which the last check found every primary commit replayed
+        private volatile long replayedUntil;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    // Replicas take reads only after their first successful check
+    @Override
+    public synchronized void start() {
+        if (healthCheck == null) {
+            healthCheck = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthCheck.scheduleWithFixedDelay(this::checkReplicas, 0,
+                    healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (healthCheck != null) {
+            healthCheck.shutdownNow();
+            healthCheck = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return healthCheck != null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Long readAfter = ReadYourWrites.readAfter();
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (!replica.healthy || readAfter != null && replica.replayedUntil < readAfter) {
+                continue;
+            }
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                markHealthy(replica, false, e.getMessage());
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica routing only hands out connections of its own pools");
+    }
+
+    // Runs before the caches drop their entries, so the reload of an evicted entry waits for this write
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onBatteriesChanged(BatteryChangedEvent event) {
+        ReadYourWrites.written(System.currentTimeMillis());
+    }
+
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            long checkedAt = System.currentTimeMillis();
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(LAG_SQL)) {
+                rs.next();
+                replica.lagSeconds = rs.getDouble(1);
+                Duration lag = Duration.ofMillis(Math.round(replica.lagSeconds * 1000));
+                replica.replayedUntil = checkedAt - lag.toMillis();
+                markHealthy(replica, lag.compareTo(maxLag) <= 0, "lag " + lag);
+            } catch (SQLException | RuntimeException e) {
+                markHealthy(replica, false, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Failed to close replica {}: {}", replica.name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void markHealthy(Replica replica, boolean healthy, String reason) {
+        if (replica.healthy != healthy) {
+            if (healthy) {
+                log.info("Replica {} added to read routing ({})", replica.name, reason);
+            } else {
+                log.warn("Replica {} removed from read routing: {}", replica.name, reason);
+            }
+        }
+        replica.healthy = healthy;
+    }
+
+    private static Counter readConnections(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("vpp.datasource.read.connections")
+                .description("Read-only connections handed out, by the database that served them")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+}
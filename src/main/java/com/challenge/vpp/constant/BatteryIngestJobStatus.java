@@ -0,0 +1,8 @@
+package com.challenge.vpp.constant;
+
+public enum BatteryIngestJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,26 @@
+package com.challenge.vpp.constant;
+
+import com.challenge.vpp.exception.BatteryDataException;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+
+import java.util.Arrays;
+
+@Getter
+@RequiredArgsConstructor
+public enum BatteryLoadFormat {
+    CSV(BatteryLoadFormat.CSV_VALUE),
+    NDJSON(MediaType.APPLICATION_NDJSON_VALUE);
+
+    public static final String CSV_VALUE = "text/csv";
+
+    private final String mediaType;
+
+    public static BatteryLoadFormat fromMediaType(MediaType mediaType) {
+        return Arrays.stream(values())
+                .filter(format -> MediaType.valueOf(format.mediaType).includes(mediaType))
+                .findFirst()
+                .orElseThrow(() -> new BatteryDataException("Unsupported load format: " + mediaType));
+    }
+}
@@ -0,0 +1,6 @@
+package com.challenge.vpp.constant;
+
+public enum BatterySeekOrder {
+    ID,
+    POSTCODE
+}
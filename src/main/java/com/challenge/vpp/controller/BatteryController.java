@@ -1,18 +1,38 @@
 package com.challenge.vpp.controller;
 
+import com.challenge.vpp.constant.BatteryLoadFormat;
+import com.challenge.vpp.constant.BatterySeekOrder;
+import com.challenge.vpp.dto.BatteryCapacityDistributionResponse;
+import com.challenge.vpp.dto.BatteryCursorPage;
+import com.challenge.vpp.dto.BatteryIngestJobResponse;
+import com.challenge.vpp.dto.BatteryIngestResponse;
 import com.challenge.vpp.dto.BatteryRequest;
 import com.challenge.vpp.dto.BatteryRequestList;
 import com.challenge.vpp.dto.BatteryResponse;
 import com.challenge.vpp.dto.BatteryStatisticsResponse;
+import com.challenge.vpp.dto.BatterySummaryResponse;
+import com.challenge.vpp.dto.BatteryUpsertResponse;
+import com.challenge.vpp.service.BatteryExportService;
+import com.challenge.vpp.service.BatteryIngestJobService;
+import com.challenge.vpp.service.BatteryIngestService;
 import com.challenge.vpp.service.BatteryService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping(value = "/api/v1",
@@ -21,6 +41,9 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class BatteryController {
     private final BatteryService batteryService;
+    private final BatteryIngestService batteryIngestService;
+    private final BatteryExportService batteryExportService;
+    private final BatteryIngestJobService batteryIngestJobService;
 
     @PostMapping("/batteries")
     public ResponseEntity<Void> addBatteries(@Valid @RequestBody BatteryRequestList batteryRequests) {
@@ -28,14 +51,109 @@ public class BatteryController {
         return ResponseEntity.ok().build();
     }
 
+    @PutMapping("/batteries")
+    public ResponseEntity<BatteryUpsertResponse> upsertBatteries(@Valid @RequestBody BatteryRequestList batteryRequests) {
+        return ResponseEntity.ok(batteryService.upsertAll(batteryRequests.getBatteries()));
+    }
+
+    @PostMapping("/batteries/bulk")
+    public ResponseEntity<Void> addBatteriesInBulk(@Valid @RequestBody BatteryRequestList batteryRequests) {
+        batteryService.bulkSave(batteryRequests.getBatteries());
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping(value = "/batteries/load",
+            consumes = {BatteryLoadFormat.CSV_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BatteryIngestResponse> loadBatteries(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body
+    ) {
+        return ResponseEntity.ok(batteryIngestService.load(body, BatteryLoadFormat.fromMediaType(contentType)));
+    }
+
+    @PostMapping("/batteries/stream")
+    public ResponseEntity<BatteryIngestResponse> streamBatteries(InputStream body) {
+        return ResponseEntity.ok(batteryIngestService.stream(body));
+    }
+
+    @PostMapping("/batteries/jobs")
+    public ResponseEntity<BatteryIngestJobResponse> submitIngestJob(@RequestBody BatteryRequestList batteryRequests) {
+        BatteryIngestJobResponse job = batteryIngestJobService.submit(batteryRequests.getBatteries());
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest()
+                        .path("/{jobId}")
+                        .buildAndExpand(job.getJobId())
+                        .toUri())
+                .body(job);
+    }
+
+    @GetMapping("/batteries/jobs/{jobId}")
+    public ResponseEntity<BatteryIngestJobResponse> getIngestJob(@PathVariable UUID jobId) {
+        return ResponseEntity.ok(batteryIngestJobService.getJob(jobId));
+    }
+
     @GetMapping("/batteries")
     public ResponseEntity<BatteryStatisticsResponse> getBatteriesInRange(
             @RequestParam int from,
             @RequestParam int to,
             @RequestParam(required = false) Long minCapacity,
-            @RequestParam(required = false) Long maxCapacity
+            @RequestParam(required = false) Long maxCapacity,
+            @RequestParam(defaultValue = "false") boolean statisticsOnly,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "0") int offset
     ) {
-        return ResponseEntity.ok(batteryService.getBatteriesInRange(from, to, minCapacity, maxCapacity));
+        if (statisticsOnly) {
+            return ResponseEntity.ok(batteryService.getStatisticsInRange(from, to, minCapacity, maxCapacity));
+        }
+        return ResponseEntity.ok(batteryService.getBatteriesInRange(from, to, minCapacity, maxCapacity, limit, offset));
+    }
+
+    @GetMapping("/batteries/summary")
+    public ResponseEntity<BatterySummaryResponse> getSnapshotSummary(
+            @RequestParam int from,
+            @RequestParam int to
+    ) {
+        return ResponseEntity.ok(batteryService.getSnapshotSummary(from, to));
+    }
+
+    @GetMapping("/batteries/analytics")
+    public ResponseEntity<BatteryCapacityDistributionResponse> getCapacityDistribution(
+            @RequestParam int from,
+            @RequestParam int to,
+            @RequestParam(defaultValue = "50,90,95,99") List<Double> percentiles,
+            @RequestParam(defaultValue = "10") int buckets
+    ) {
+        return ResponseEntity.ok(batteryService.getCapacityDistribution(from, to, percentiles, buckets));
+    }
+
+    @GetMapping(value = "/batteries/export",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, BatteryLoadFormat.CSV_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportBatteries(
+            @RequestParam(defaultValue = "NDJSON") BatteryLoadFormat format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        // gzip is a transfer encoding here: clients decompress it, so the saved file is still plain NDJSON or CSV
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        String filename = "batteries." + format.name().toLowerCase();
+        StreamingResponseBody body = outputStream -> {
+            if (gzip) {
+                try (GZIPOutputStream compressed = new GZIPOutputStream(outputStream, 64 * 1024)) {
+                    batteryExportService.export(compressed, format);
+                }
+            } else {
+                batteryExportService.export(outputStream, format);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString());
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
     }
 
     @GetMapping(value = "/batteries/{id}")
@@ -64,6 +182,15 @@ public class BatteryController {
         return ResponseEntity.ok(batteryService.getAllBatteries(pageable));
     }
 
+    @GetMapping(value = "/batteries/all", params = "cursor")
+    public ResponseEntity<BatteryCursorPage> getBatteriesAfter(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "ID") BatterySeekOrder orderBy,
+            @RequestParam(defaultValue = "100") int size
+    ) {
+        return ResponseEntity.ok(batteryService.getBatteriesAfter(cursor, orderBy, size));
+    }
+
 
 
 }
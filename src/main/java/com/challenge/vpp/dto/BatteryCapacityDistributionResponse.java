@@ -0,0 +1,26 @@
+package com.challenge.vpp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Builder
+@Data
+public class BatteryCapacityDistributionResponse {
+    private long batteryCount;
+    private long minWattCapacity;
+    private long maxWattCapacity;
+    private double averageWattCapacity;
+    private Map<String, Long> percentiles;
+    private List<Bucket> buckets;
+
+    @Builder
+    @Data
+    public static class Bucket {
+        private long fromWattCapacity;
+        private long toWattCapacity;
+        private long batteryCount;
+    }
+}
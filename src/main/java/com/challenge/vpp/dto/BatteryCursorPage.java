@@ -0,0 +1,14 @@
+package com.challenge.vpp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BatteryCursorPage {
+    private List<BatteryResponse> content;
+    private int size;
+    private String nextCursor;
+}
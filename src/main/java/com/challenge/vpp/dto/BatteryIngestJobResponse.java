@@ -0,0 +1,24 @@
+package com.challenge.vpp.dto;
+
+import com.challenge.vpp.constant.BatteryIngestJobStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+public class BatteryIngestJobResponse {
+    private UUID jobId;
+    private BatteryIngestJobStatus status;
+    private long rowsTotal;
+    private long rowsDone;
+    private long rowsFailed;
+    private double rowsPerSecond;
+    private Instant submittedAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private List<String> errors;
+}
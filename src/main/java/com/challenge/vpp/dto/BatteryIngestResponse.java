@@ -0,0 +1,11 @@
+package com.challenge.vpp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BatteryIngestResponse {
+    private long rowsLoaded;
+    private long rowsRejected;
+}
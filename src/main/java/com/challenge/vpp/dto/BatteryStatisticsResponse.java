@@ -1,5 +1,6 @@
 package com.challenge.vpp.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
@@ -8,7 +9,11 @@ import java.util.List;
 @Builder
 @Data
 public class BatteryStatisticsResponse {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<String> batteries;
+    private long batteryCount;
     private long totalWattCapacity;
     private double averageWattCapacity;
+    private long minWattCapacity;
+    private long maxWattCapacity;
 }
@@ -0,0 +1,19 @@
+package com.challenge.vpp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@Builder
+public class BatterySummaryResponse {
+    private long batteryCount;
+    private long totalWattCapacity;
+    private double averageWattCapacity;
+    private long minWattCapacity;
+    private long maxWattCapacity;
+    private long snapshotVersion;
+    private Instant snapshotTakenAt;
+    private long snapshotAgeMillis;
+}
@@ -0,0 +1,12 @@
+package com.challenge.vpp.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BatteryUpsertResponse {
+    private long inserted;
+    private long updated;
+    private long unchanged;
+}
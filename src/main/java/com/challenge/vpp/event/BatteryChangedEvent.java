@@ -0,0 +1,35 @@
+package com.challenge.vpp.event;
+
+import com.challenge.vpp.model.Battery;
+
+import java.util.List;
+
+public record BatteryChangedEvent(List<Entry> added, List<Entry> removed, boolean reloadRequired) {
+
+    public record Entry(Long id, String name, int postcode, long wattCapacity) {
+        public static Entry of(Battery battery) {
+            return new Entry(battery.getId(), battery.getName(), battery.getPostcode(), battery.getWattCapacity());
+        }
+    }
+
+    public static BatteryChangedEvent saved(List<Battery> batteries) {
+        return new BatteryChangedEvent(batteries.stream().map(Entry::of).toList(), List.of(), false);
+    }
+
+    public static BatteryChangedEvent updated(Entry before, Battery after) {
+        return new BatteryChangedEvent(List.of(Entry.of(after)), List.of(before), false);
+    }
+
+    public static BatteryChangedEvent upserted(List<Battery> after, List<Battery> before) {
+        return new BatteryChangedEvent(after.stream().map(Entry::of).toList(), before.stream().map(Entry::of).toList(),
+                false);
+    }
+
+    public static BatteryChangedEvent deleted(Battery battery) {
+        return new BatteryChangedEvent(List.of(), List.of(Entry.of(battery)), false);
+    }
+
+    public static BatteryChangedEvent reloaded() {
+        return new BatteryChangedEvent(List.of(), List.of(), true);
+    }
+}
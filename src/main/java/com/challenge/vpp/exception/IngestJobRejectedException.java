@@ -0,0 +1,7 @@
+package com.challenge.vpp.exception;
+
+public class IngestJobRejectedException extends RuntimeException {
+    public IngestJobRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.challenge.vpp.exception;
+
+public class WriteBufferFullException extends RuntimeException {
+    public WriteBufferFullException(String message) {
+        super(message);
+    }
+}
@@ -2,12 +2,16 @@ package com.challenge.vpp.exception.handler;
 
 import com.challenge.vpp.dto.ErrorResponse;
 import com.challenge.vpp.exception.BatteryDataException;
+import com.challenge.vpp.exception.IngestJobRejectedException;
 import com.challenge.vpp.exception.InvalidCapacityRangeException;
 import com.challenge.vpp.exception.InvalidPostcodeRangeException;
 import com.challenge.vpp.exception.ResourceNotFoundException;
+import com.challenge.vpp.exception.WriteBufferFullException;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
+import org.postgresql.util.PSQLException;
 import org.springframework.beans.TypeMismatchException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -17,15 +21,21 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
 
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @RestControllerAdvice
 @Slf4j
 public class GlobalExceptionHandler {
 
+    // The unique index from V6; PostgreSQL names the partition's copy of it (V7) rather than the partitioned index
+    private static final Pattern NAME_POSTCODE_INDEX =
+            Pattern.compile("uk_battery_name_postcode|battery_region_\\d+_name_postcode_idx");
+
     @ExceptionHandler(InvalidPostcodeRangeException.class)
     public ResponseEntity<ErrorResponse> handleInvalidPostcodeRange(
             InvalidPostcodeRangeException ex, WebRequest request) {
@@ -56,6 +66,54 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(IngestJobRejectedException.class)
+    public ResponseEntity<ErrorResponse> handleIngestJobRejected(
+            IngestJobRejectedException ex, WebRequest request) {
+        return createErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE,
+                ex.getMessage(),
+                request.getDescription(false)
+        );
+    }
+
+    @ExceptionHandler(WriteBufferFullException.class)
+    public ResponseEntity<ErrorResponse> handleWriteBufferFull(
+            WriteBufferFullException ex, WebRequest request) {
+        return createErrorResponse(
+                HttpStatus.SERVICE_UNAVAILABLE,
+                ex.getMessage(),
+                request.getDescription(false)
+        );
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ErrorResponse> handleDataIntegrityViolation(
+            DataIntegrityViolationException ex, WebRequest request) {
+        log.warn("Rejected conflicting battery data: {}", ex.getMostSpecificCause().getMessage());
+        String constraint = violatedConstraint(ex);
+        return createErrorResponse(
+                HttpStatus.CONFLICT,
+                constraint != null && NAME_POSTCODE_INDEX.matcher(constraint).matches()
+                        ? "A battery with the same name and postcode already exists"
+                        : "The request conflicts with existing battery data",
+                request.getDescription(false)
+        );
+    }
+
+    // With JDBC batching the driver error may sit behind a BatchUpdateException
+    private static String violatedConstraint(DataIntegrityViolationException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PSQLException psqlException && psqlException.getServerErrorMessage() != null) {
+                return psqlException.getServerErrorMessage().getConstraint();
+            }
+            if (cause instanceof SQLException sqlException && sqlException.getNextException() instanceof PSQLException next
+                    && next.getServerErrorMessage() != null) {
+                return next.getServerErrorMessage().getConstraint();
+            }
+        }
+        return null;
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleMethodArgumentNotValid(
             MethodArgumentNotValidException ex, WebRequest request) {
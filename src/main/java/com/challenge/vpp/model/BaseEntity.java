@@ -13,7 +13,7 @@ import java.time.ZonedDateTime;
 @MappedSuperclass
 public abstract class BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
     protected Long id;
 
     @JsonFormat(pattern = AppConstant.DATE_TIME_PATTERN, timezone = AppConstant.UTC_TIME_ZONE)
@@ -0,0 +1,30 @@
+package com.challenge.vpp.repo;
+
+import com.challenge.vpp.model.Battery;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface BatteryBulkRepository {
+    int batchInsert(List<Battery> batteries);
+
+    long copyIn(Iterator<Battery> batteries);
+
+    void scanOrderedByPostcode(Consumer<Battery> consumer);
+
+    void scanOrderedById(Consumer<Battery> consumer);
+
+    void scanCapacityCounts(int fromPostcode, int toPostcode, CapacityCountConsumer consumer);
+
+    List<UpsertedBattery> upsert(List<Battery> batteries);
+
+    @FunctionalInterface
+    interface CapacityCountConsumer {
+        void accept(int postcode, long wattCapacity, long count);
+    }
+
+    // previous is null for an inserted battery; rows that already held the same values are not reported
+    record UpsertedBattery(Battery battery, Battery previous) {
+    }
+}
@@ -0,0 +1,305 @@
+package com.challenge.vpp.repo;
+
+import com.challenge.vpp.model.Battery;
+import jakarta.annotation.PostConstruct;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.ResultSet;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+public class BatteryBulkRepositoryImpl implements BatteryBulkRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO battery (id, name, postcode, watt_capacity, created_at, modified_at) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String COPY_SQL =
+            "COPY battery (id, name, postcode, watt_capacity, created_at, modified_at) FROM STDIN WITH (FORMAT csv)";
+    // Each nextval reserves the block of ID_BLOCK ids ending at the returned value, as Hibernate's pooled optimizer
+    // does; ID_BLOCK is battery_seq's INCREMENT BY (V2) and the entity's allocation size
+    private static final String NEXT_ID_BLOCKS_SQL = "SELECT nextval('battery_seq') FROM generate_series(1, ?)";
+    private static final int ID_BLOCK = 50;
+    // COPY keeps the connection busy, so a load is sent in segments and the ids of each are reserved up front
+    private static final int COPY_SEGMENT = 10_000;
+    private static final String SCAN_BY_POSTCODE_SQL =
+            "SELECT id, name, postcode, watt_capacity FROM battery ORDER BY postcode, id";
+    private static final String SCAN_BY_ID_SQL =
+            "SELECT id, name, postcode, watt_capacity FROM battery ORDER BY id";
+    private static final String SCAN_CAPACITY_COUNTS_SQL =
+            "SELECT postcode, watt_capacity, COUNT(*) AS batteries FROM battery " +
+            "WHERE postcode BETWEEN ? AND ? GROUP BY postcode, watt_capacity ORDER BY postcode, watt_capacity";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final List<String> UPSERT_COLUMNS = List.of("name", "postcode", "watt_capacity");
+    private static final String UNIQUE_INDEX_COLUMNS_SQL =
+            "SELECT array_to_string(array_agg(a.attname::text ORDER BY a.attname), ',') " +
+            "FROM pg_index i JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = ANY (i.indkey) " +
+            "WHERE i.indrelid = 'battery'::regclass AND i.indisunique AND i.indpred IS NULL " +
+            "GROUP BY i.indexrelid";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate primaryReadTransaction;
+    private final int batchSize;
+    private final List<String> keyColumns;
+    private final String upsertSql;
+
+    public BatteryBulkRepositoryImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     @Value("${vpp.ingest.batch-size:1000}") int batchSize,
+                                     @Value("${vpp.upsert.key-columns:name,postcode}") List<String> keyColumns) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // Read-only transactions may be served by a replica; the index and sketch loads must see every committed write
+        this.primaryReadTransaction = new TransactionTemplate(transactionManager);
+        this.primaryReadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.keyColumns = List.copyOf(keyColumns);
+        this.upsertSql = upsertSql(this.keyColumns);
+    }
+
+    // Fails startup rather than the first upsert when no unique index matches the configured key
+    @PostConstruct
+    void verifyUpsertKeyIndex() {
+        String key = keyColumns.stream().sorted().distinct().collect(Collectors.joining(","));
+        List<String> uniqueIndexes = jdbcTemplate.queryForList(UNIQUE_INDEX_COLUMNS_SQL, String.class);
+        if (!uniqueIndexes.contains(key)) {
+            throw new IllegalStateException("vpp.upsert.key-columns " + keyColumns
+                    + " has no matching unique index on battery; unique indexes cover " + uniqueIndexes);
+        }
+    }
+
+    @Override
+    public int batchInsert(List<Battery> batteries) {
+        assignIds(batteries);
+        OffsetDateTime now = OffsetDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_SQL, batteries, batchSize, (ps, battery) -> {
+            ps.setLong(1, battery.getId());
+            ps.setString(2, battery.getName());
+            ps.setInt(3, battery.getPostcode());
+            ps.setLong(4, battery.getWattCapacity());
+            ps.setObject(5, now);
+            ps.setObject(6, now);
+        });
+        return batteries.size();
+    }
+
+    @Override
+    public long copyIn(Iterator<Battery> batteries) {
+        String now = OffsetDateTime.now().toString();
+        List<Battery> segment = new ArrayList<>(COPY_SEGMENT);
+        long rows = 0;
+        while (batteries.hasNext()) {
+            segment.add(batteries.next());
+            if (segment.size() == COPY_SEGMENT || !batteries.hasNext()) {
+                assignIds(segment);
+                rows += copySegment(segment, now);
+                segment.clear();
+            }
+        }
+        return rows;
+    }
+
+    private long copySegment(List<Battery> segment, String now) {
+        Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            PGCopyOutputStream copy = new PGCopyOutputStream(
+                    connection.unwrap(PGConnection.class), COPY_SQL, COPY_BUFFER_SIZE);
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8));
+                for (Battery battery : segment) {
+                    writeCsvRow(writer, battery, now);
+                }
+                writer.flush();
+                return copy.endCopy();
+            } catch (IOException e) {
+                throw new SQLException("COPY into battery failed", e);
+            } finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        });
+        return rows != null ? rows : 0;
+    }
+
+    // One nextval per ID_BLOCK rows; a plain insert relying on the column default would use up a block per row
+    private void assignIds(List<Battery> batteries) {
+        long[] ids = nextIds(batteries.size());
+        for (int i = 0; i < ids.length; i++) {
+            batteries.get(i).setId(ids[i]);
+        }
+    }
+
+    private long[] nextIds(int count) {
+        if (count == 0) {
+            return new long[0];
+        }
+        List<Long> blocks = jdbcTemplate.queryForList(NEXT_ID_BLOCKS_SQL, Long.class, Math.ceilDiv(count, ID_BLOCK));
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = blocks.get(i / ID_BLOCK) - ID_BLOCK + 1 + i % ID_BLOCK;
+        }
+        return ids;
+    }
+
+    @Override
+    public void scanOrderedByPostcode(Consumer<Battery> consumer) {
+        scan(primaryReadTransaction, SCAN_BY_POSTCODE_SQL, consumer);
+    }
+
+    @Override
+    public void scanOrderedById(Consumer<Battery> consumer) {
+        scan(readOnlyTransaction, SCAN_BY_ID_SQL, consumer);
+    }
+
+    @Override
+    public void scanCapacityCounts(int fromPostcode, int toPostcode, CapacityCountConsumer consumer) {
+        // The driver only streams with a fetch size when auto-commit is off
+        primaryReadTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SCAN_CAPACITY_COUNTS_SQL);
+            statement.setFetchSize(batchSize);
+            statement.setInt(1, fromPostcode);
+            statement.setInt(2, toPostcode);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(
+                rs.getInt("postcode"), rs.getLong("watt_capacity"), rs.getLong("batteries"))));
+    }
+
+    @Override
+    public List<UpsertedBattery> upsert(List<Battery> batteries) {
+        // ON CONFLICT cannot touch the same row twice in one statement, so the last registration of a key wins
+        Map<List<Object>, Battery> unique = new LinkedHashMap<>();
+        batteries.forEach(battery -> unique.put(naturalKey(battery), battery));
+        OffsetDateTime now = OffsetDateTime.now();
+        // A row that turns out to be an update leaves its reserved id unused
+        long[] ids = nextIds(unique.size());
+
+        List<Battery> upserted = new ArrayList<>();
+        Map<Long, Battery> previous = new HashMap<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(upsertSql);
+            statement.setArray(1, connection.createArrayOf("int8",
+                    Arrays.stream(ids).boxed().toArray()));
+            statement.setArray(2, connection.createArrayOf("varchar",
+                    unique.values().stream().map(Battery::getName).toArray()));
+            statement.setArray(3, connection.createArrayOf("int4",
+                    unique.values().stream().map(Battery::getPostcode).toArray()));
+            statement.setArray(4, connection.createArrayOf("int8",
+                    unique.values().stream().map(Battery::getWattCapacity).toArray()));
+            statement.setObject(5, now);
+            statement.setObject(6, now);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            Battery battery = battery(rs);
+            if (rs.getBoolean("upserted")) {
+                upserted.add(battery);
+            } else {
+                previous.put(battery.getId(), battery);
+            }
+        });
+        return upserted.stream()
+                .map(battery -> new UpsertedBattery(battery, previous.get(battery.getId())))
+                .toList();
+    }
+
+    private void scan(TransactionTemplate transaction, String sql, Consumer<Battery> consumer) {
+        // The driver only streams with a fetch size when auto-commit is off
+        transaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(batchSize);
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(battery(rs))));
+    }
+
+    private List<Object> naturalKey(Battery battery) {
+        return keyColumns.stream()
+                .<Object>map(column -> switch (column) {
+                    case "name" -> battery.getName();
+                    case "postcode" -> battery.getPostcode();
+                    default -> battery.getWattCapacity();
+                })
+                .toList();
+    }
+
+    private static Battery battery(ResultSet rs) throws SQLException {
+        Battery battery = Battery.builder()
+                .name(rs.getString("name"))
+                .postcode(rs.getInt("postcode"))
+                .wattCapacity(rs.getLong("watt_capacity"))
+                .build();
+        battery.setId(rs.getLong("id"));
+        return battery;
+    }
+
+    // The previous rows are read from the same snapshot as the insert, so an update reports what it replaced. Both sets
+    // come back side by side and are paired by id in Java: the row estimate for unnest is too low to trust a join.
+    // ON CONFLICT needs a unique index on exactly the key columns; V6 creates the one for name and postcode. Unique
+    // indexes on the partitioned table must include postcode, the partition key
+    private static String upsertSql(List<String> keyColumns) {
+        if (keyColumns.isEmpty() || !UPSERT_COLUMNS.containsAll(keyColumns)) {
+            throw new IllegalArgumentException("Upsert key columns must be a subset of " + UPSERT_COLUMNS
+                    + " but were " + keyColumns);
+        }
+        if (!keyColumns.contains("postcode")) {
+            throw new IllegalArgumentException("Upsert key columns must include postcode, the partition key, but were "
+                    + keyColumns);
+        }
+        List<String> valueColumns = UPSERT_COLUMNS.stream().filter(column -> !keyColumns.contains(column)).toList();
+        String conflictAction = valueColumns.isEmpty()
+                ? "DO NOTHING"
+                : "DO UPDATE SET " + valueColumns.stream()
+                        .map(column -> column + " = EXCLUDED." + column)
+                        .collect(Collectors.joining(", ")) + ", modified_at = EXCLUDED.modified_at WHERE "
+                        + valueColumns.stream()
+                        .map(column -> "battery." + column + " IS DISTINCT FROM EXCLUDED." + column)
+                        .collect(Collectors.joining(" OR "));
+        return "WITH input AS (SELECT * FROM unnest(?::bigint[], ?::varchar[], ?::int[], ?::bigint[]) " +
+                "AS i (id, name, postcode, watt_capacity)), " +
+                "previous AS (SELECT b.id, b.name, b.postcode, b.watt_capacity FROM battery b JOIN input i ON " +
+                keyColumns.stream().map(column -> "b." + column + " = i." + column)
+                        .collect(Collectors.joining(" AND ")) + "), " +
+                "upserted AS (INSERT INTO battery (id, name, postcode, watt_capacity, created_at, modified_at) " +
+                "SELECT id, name, postcode, watt_capacity, ?, ? FROM input " +
+                "ON CONFLICT (" + String.join(", ", keyColumns) + ") " + conflictAction + " " +
+                "RETURNING id, name, postcode, watt_capacity) " +
+                "SELECT true AS upserted, id, name, postcode, watt_capacity FROM upserted " +
+                "UNION ALL SELECT false, id, name, postcode, watt_capacity FROM previous";
+    }
+
+    private static void writeCsvRow(Writer writer, Battery battery, String timestamp) throws IOException {
+        writer.write(Long.toString(battery.getId()));
+        writer.write(",\"");
+        writer.write(battery.getName().replace("\"", "\"\""));
+        writer.write("\",");
+        writer.write(Integer.toString(battery.getPostcode()));
+        writer.write(',');
+        writer.write(Long.toString(battery.getWattCapacity()));
+        writer.write(',');
+        writer.write(timestamp);
+        writer.write(',');
+        writer.write(timestamp);
+        writer.write('\n');
+    }
+}
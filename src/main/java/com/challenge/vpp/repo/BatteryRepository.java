@@ -1,15 +1,62 @@
 package com.challenge.vpp.repo;
 
 import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.projection.BatteryPostcodeRollup;
+import com.challenge.vpp.repo.projection.BatteryRangeSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface BatteryRepository extends JpaRepository<Battery, Long> {
+public interface BatteryRepository extends JpaRepository<Battery, Long>, BatteryBulkRepository {
+    String SUMMARIZE_RANGE_SQL = "SELECT COUNT(*) AS \"count\", COALESCE(SUM(watt_capacity), 0) AS \"totalWattCapacity\", " +
+            "COALESCE(MIN(watt_capacity), 0) AS \"minWattCapacity\", COALESCE(MAX(watt_capacity), 0) AS \"maxWattCapacity\" " +
+            "FROM battery " +
+            "WHERE postcode BETWEEN :from AND :to AND watt_capacity BETWEEN :minCapacity AND :maxCapacity";
+    String SUMMARIZE_POSTCODE_ROLLUP_SQL = "SELECT COALESCE(SUM(battery_count), 0) AS \"count\", " +
+            "COALESCE(SUM(total_watt_capacity), 0) AS \"totalWattCapacity\", " +
+            "COALESCE(MIN(min_watt_capacity), 0) AS \"minWattCapacity\", COALESCE(MAX(max_watt_capacity), 0) AS \"maxWattCapacity\" " +
+            "FROM battery_postcode_rollup " +
+            "WHERE postcode BETWEEN :from AND :to";
+    // The version is joined onto every row, and an empty rollup still returns one row with a null postcode
+    String FIND_POSTCODE_ROLLUPS_SQL = "SELECT r.postcode AS \"postcode\", r.battery_count AS \"batteryCount\", " +
+            "r.total_watt_capacity AS \"totalWattCapacity\", r.min_watt_capacity AS \"minWattCapacity\", " +
+            "r.max_watt_capacity AS \"maxWattCapacity\", v.version AS \"version\" " +
+            "FROM (SELECT SUM(changes)::bigint AS version FROM battery_postcode_rollup_version) v " +
+            "LEFT JOIN battery_postcode_rollup r ON TRUE ORDER BY r.postcode";
+    String FIND_NAMES_IN_RANGE_SQL = "SELECT name FROM battery " +
+            "WHERE postcode BETWEEN :from AND :to AND watt_capacity BETWEEN :minCapacity AND :maxCapacity " +
+            "ORDER BY name COLLATE \"C\"";
+    String FIND_NAMES_IN_RANGE_PAGE_SQL = FIND_NAMES_IN_RANGE_SQL + " LIMIT :limit OFFSET :offset";
+    String FIND_PAGE_AFTER_ID_SQL = "SELECT * FROM battery WHERE id > :afterId ORDER BY id LIMIT :limit";
+    String FIND_PAGE_AFTER_POSTCODE_AND_ID_SQL = "SELECT * FROM battery " +
+            "WHERE (postcode, id) > (:afterPostcode, :afterId) ORDER BY postcode, id LIMIT :limit";
+
     List<Battery> findByPostcodeBetween(int from, int to);
     List<Battery> findByPostcodeBetweenAndWattCapacityBetween(int from, int to, long minCapacity, long maxCapacity);
     List<Battery> findByPostcodeBetweenAndWattCapacityGreaterThanEqual(int from, int to, long minCapacity);
     List<Battery> findByPostcodeBetweenAndWattCapacityLessThanEqual(int from, int to, long maxCapacity);
+
+    @Query(value = SUMMARIZE_RANGE_SQL, nativeQuery = true)
+    BatteryRangeSummary summarizeRange(int from, int to, long minCapacity, long maxCapacity);
+
+    @Query(value = SUMMARIZE_POSTCODE_ROLLUP_SQL, nativeQuery = true)
+    BatteryRangeSummary summarizePostcodeRollup(int from, int to);
+
+    @Query(value = FIND_POSTCODE_ROLLUPS_SQL, nativeQuery = true)
+    List<BatteryPostcodeRollup> findPostcodeRollups();
+
+    @Query(value = FIND_NAMES_IN_RANGE_SQL, nativeQuery = true)
+    List<String> findNamesInRange(int from, int to, long minCapacity, long maxCapacity);
+
+    @Query(value = FIND_NAMES_IN_RANGE_PAGE_SQL, nativeQuery = true)
+    List<String> findNamesInRange(int from, int to, long minCapacity, long maxCapacity, int limit, int offset);
+
+    @Query(value = FIND_PAGE_AFTER_ID_SQL, nativeQuery = true)
+    List<Battery> findPageAfterId(long afterId, int limit);
+
+    @Query(value = FIND_PAGE_AFTER_POSTCODE_AND_ID_SQL, nativeQuery = true)
+    List<Battery> findPageAfterPostcodeAndId(int afterPostcode, long afterId, int limit);
 }
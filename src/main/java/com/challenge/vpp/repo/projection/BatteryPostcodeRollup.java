@@ -0,0 +1,16 @@
+package com.challenge.vpp.repo.projection;
+
+public interface BatteryPostcodeRollup {
+    // Null only on the single row returned for an empty rollup
+    Integer getPostcode();
+
+    long getBatteryCount();
+
+    long getTotalWattCapacity();
+
+    long getMinWattCapacity();
+
+    long getMaxWattCapacity();
+
+    long getVersion();
+}
@@ -0,0 +1,11 @@
+package com.challenge.vpp.repo.projection;
+
+public interface BatteryRangeSummary {
+    long getCount();
+
+    long getTotalWattCapacity();
+
+    long getMinWattCapacity();
+
+    long getMaxWattCapacity();
+}
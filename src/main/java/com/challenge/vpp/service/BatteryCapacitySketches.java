@@ -0,0 +1,240 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.challenge.vpp.repo.BatteryRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.IntCountsHistogram;
+import org.HdrHistogram.PackedHistogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+@Slf4j
+public class BatteryCapacitySketches {
+
+    // Every 32 consecutive postcodes also keep a merged histogram, so a wide range merges blocks instead of postcodes
+    private static final int BLOCK_SHIFT = 5;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private final BatteryRepository batteryRepository;
+    private final boolean enabled;
+    private final int significantDigits;
+    // Published maps and histograms are never modified; a reload copies them and swaps both in at once, so queries
+    // merge without locking and never see postcodes from one reload with blocks from another
+    private volatile Sketches sketches = new Sketches(new TreeMap<>(), new TreeMap<>());
+    // Stale postcode intervals, start to inclusive end. Writes only mark their postcodes here and the next query over
+    // them reloads them, so a change is never applied twice; everything starts stale and loads on first use
+    private final TreeMap<Integer, Integer> stale = new TreeMap<>(Map.of(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    // Intervals a running reload took from stale; they count as stale until its maps are published
+    private final TreeMap<Integer, Integer> loading = new TreeMap<>();
+    private final ReentrantLock staleLock = new ReentrantLock();
+    // Held across a reload so that an older reload can never publish over a newer one
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    public BatteryCapacitySketches(BatteryRepository batteryRepository,
+                                   @Value("${vpp.capacity-sketch.enabled:true}") boolean enabled,
+                                   @Value("${vpp.capacity-sketch.significant-digits:2}") int significantDigits) {
+        this.batteryRepository = batteryRepository;
+        this.enabled = enabled;
+        this.significantDigits = significantDigits;
+    }
+
+    private record Sketches(NavigableMap<Integer, AbstractHistogram> postcodes,
+                            NavigableMap<Integer, AbstractHistogram> blocks) {
+    }
+
+    @Timed(value = "vpp.battery.aggregation", extraTags = {"structure", "capacity-sketch"})
+    public Histogram merge(int from, int to) {
+        if (!enabled) {
+            Histogram histogram = new Histogram(significantDigits);
+            batteryRepository.scanCapacityCounts(from, to,
+                    (postcode, wattCapacity, count) -> histogram.recordValueWithCount(wattCapacity, count));
+            return histogram;
+        }
+        refresh(from, to);
+
+        Sketches current = sketches;
+        NavigableMap<Integer, AbstractHistogram> postcodes = current.postcodes();
+        NavigableMap<Integer, AbstractHistogram> blocks = current.blocks();
+        Histogram merged = new Histogram(significantDigits);
+        long firstBlock = Math.ceilDiv((long) from, BLOCK_SIZE);
+        long lastBlock = Math.floorDiv((long) to + 1, BLOCK_SIZE) - 1;
+        if (firstBlock > lastBlock) {
+            postcodes.subMap(from, true, to, true).values().forEach(merged::add);
+            return merged;
+        }
+        postcodes.subMap(from, true, (int) (firstBlock * BLOCK_SIZE), false).values().forEach(merged::add);
+        blocks.subMap((int) firstBlock, true, (int) lastBlock, true).values().forEach(merged::add);
+        postcodes.subMap((int) ((lastBlock + 1) * BLOCK_SIZE - 1), false, to, true).values().forEach(merged::add);
+        return merged;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onBatteriesChanged(BatteryChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        staleLock.lock();
+        try {
+            if (event.reloadRequired()) {
+                stale.clear();
+                stale.put(Integer.MIN_VALUE, Integer.MAX_VALUE);
+                return;
+            }
+            event.added().forEach(entry -> markStale(entry.postcode(), entry.postcode()));
+            event.removed().forEach(entry -> markStale(entry.postcode(), entry.postcode()));
+        } finally {
+            staleLock.unlock();
+        }
+    }
+
+    private void refresh(int from, int to) {
+        // A query over an interval another reload is still loading counts it as stale, so it waits for that reload
+        if (!isStale(from, to)) {
+            return;
+        }
+        reloadLock.lock();
+        try {
+            // Taken under the reload lock: a change marked after this point is picked up by the next query
+            List<int[]> intervals = takeStale(from, to);
+            if (intervals.isEmpty()) {
+                return;
+            }
+            boolean published = false;
+            try {
+                TreeMap<Integer, AbstractHistogram> postcodes = new TreeMap<>(sketches.postcodes());
+                TreeMap<Integer, AbstractHistogram> blocks = new TreeMap<>(sketches.blocks());
+                for (int[] interval : intervals) {
+                    reload(interval[0], interval[1], postcodes, blocks);
+                }
+                sketches = new Sketches(Collections.unmodifiableNavigableMap(postcodes),
+                        Collections.unmodifiableNavigableMap(blocks));
+                published = true;
+            } finally {
+                finishLoading(published);
+            }
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void reload(int from, int to, NavigableMap<Integer, AbstractHistogram> postcodes,
+                        NavigableMap<Integer, AbstractHistogram> blocks) {
+        long start = System.nanoTime();
+        Map<Integer, AbstractHistogram> loaded = new HashMap<>();
+        batteryRepository.scanCapacityCounts(from, to, (postcode, wattCapacity, count) -> loaded
+                .computeIfAbsent(postcode, ignored -> new PackedHistogram(significantDigits))
+                .recordValueWithCount(wattCapacity, count));
+
+        TreeSet<Integer> touchedBlocks = new TreeSet<>();
+        NavigableMap<Integer, AbstractHistogram> previous = postcodes.subMap(from, true, to, true);
+        previous.keySet().forEach(postcode -> touchedBlocks.add(postcode >> BLOCK_SHIFT));
+        loaded.keySet().forEach(postcode -> touchedBlocks.add(postcode >> BLOCK_SHIFT));
+        previous.keySet().removeIf(postcode -> !loaded.containsKey(postcode));
+        postcodes.putAll(loaded);
+
+        for (int block : touchedBlocks) {
+            int first = block << BLOCK_SHIFT;
+            NavigableMap<Integer, AbstractHistogram> members =
+                    postcodes.subMap(first, true, first + BLOCK_SIZE - 1, true);
+            if (members.isEmpty()) {
+                blocks.remove(block);
+                continue;
+            }
+            AbstractHistogram merged = new IntCountsHistogram(significantDigits);
+            members.values().forEach(merged::add);
+            blocks.put(block, merged);
+        }
+        log.debug("Reloaded capacity sketches for postcodes {}..{} ({} postcodes) in {} ms",
+                from, to, loaded.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void markStale(int from, int to) {
+        int start = from;
+        int end = to;
+        Map.Entry<Integer, Integer> before = stale.floorEntry(from);
+        if (before != null && (long) before.getValue() + 1 >= from) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Integer, Integer> next = stale.ceilingEntry(start);
+        while (next != null && (long) next.getKey() <= (long) end + 1) {
+            end = Math.max(end, next.getValue());
+            stale.remove(next.getKey());
+            next = stale.ceilingEntry(start);
+        }
+        stale.put(start, end);
+    }
+
+    private boolean isStale(int from, int to) {
+        staleLock.lock();
+        try {
+            return !overlapping(stale, from, to).isEmpty() || !overlapping(loading, from, to).isEmpty();
+        } finally {
+            staleLock.unlock();
+        }
+    }
+
+    // Moves the stale parts of [from, to] to loading
+    private List<int[]> takeStale(int from, int to) {
+        staleLock.lock();
+        try {
+            List<int[]> taken = overlapping(stale, from, to);
+            for (int[] interval : taken) {
+                Map.Entry<Integer, Integer> entry = stale.floorEntry(interval[0]);
+                stale.remove(entry.getKey());
+                if (entry.getKey() < interval[0]) {
+                    stale.put(entry.getKey(), interval[0] - 1);
+                }
+                if (entry.getValue() > interval[1]) {
+                    stale.put(interval[1] + 1, entry.getValue());
+                }
+                loading.put(interval[0], interval[1]);
+            }
+            return taken;
+        } finally {
+            staleLock.unlock();
+        }
+    }
+
+    // A reload that failed before publishing hands its intervals back, so the next query retries them
+    private void finishLoading(boolean published) {
+        staleLock.lock();
+        try {
+            if (!published) {
+                loading.forEach(this::markStale);
+            }
+            loading.clear();
+        } finally {
+            staleLock.unlock();
+        }
+    }
+
+    private static List<int[]> overlapping(TreeMap<Integer, Integer> intervals, int from, int to) {
+        List<int[]> overlapping = new ArrayList<>();
+        Map.Entry<Integer, Integer> floor = intervals.floorEntry(from);
+        Integer key = floor != null && floor.getValue() >= from ? floor.getKey() : intervals.ceilingKey(from);
+        while (key != null && key <= to) {
+            overlapping.add(new int[]{Math.max(key, from), Math.min(intervals.get(key), to)});
+            key = intervals.higherKey(key);
+        }
+        return overlapping;
+    }
+}
@@ -0,0 +1,38 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.constant.BatterySeekOrder;
+import com.challenge.vpp.exception.BatteryDataException;
+import com.challenge.vpp.model.Battery;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+record BatteryCursor(BatterySeekOrder order, int postcode, long id) {
+
+    private static final String SEPARATOR = ":";
+
+    static BatteryCursor first(BatterySeekOrder order) {
+        return new BatteryCursor(order, Integer.MIN_VALUE, Long.MIN_VALUE);
+    }
+
+    static BatteryCursor after(BatterySeekOrder order, Battery battery) {
+        return new BatteryCursor(order, battery.getPostcode(), battery.getId());
+    }
+
+    static BatteryCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(SEPARATOR);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Unexpected cursor format");
+            }
+            return new BatteryCursor(BatterySeekOrder.valueOf(parts[0]), Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new BatteryDataException("Invalid cursor: " + token);
+        }
+    }
+
+    String encode() {
+        String value = order.name() + SEPARATOR + postcode + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,10 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.constant.BatteryLoadFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface BatteryExportService {
+    long export(OutputStream output, BatteryLoadFormat format) throws IOException;
+}
@@ -0,0 +1,88 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.constant.BatteryLoadFormat;
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatteryExportServiceImpl implements BatteryExportService {
+    private static final String CSV_HEADER = "id,name,postcode,capacity\n";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BatteryRepository batteryRepository;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public long export(OutputStream output, BatteryLoadFormat format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+        AtomicLong exported = new AtomicLong();
+        try {
+            if (format == BatteryLoadFormat.CSV) {
+                writer.write(CSV_HEADER);
+                batteryRepository.scanOrderedById(battery -> {
+                    writeCsvRow(writer, battery);
+                    exported.incrementAndGet();
+                });
+            } else {
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+                generator.setRootValueSeparator(null);
+                batteryRepository.scanOrderedById(battery -> {
+                    writeJsonLine(generator, battery);
+                    exported.incrementAndGet();
+                });
+                generator.flush();
+            }
+        } catch (UncheckedIOException e) {
+            log.warn("Battery export aborted after {} rows: {}", exported.get(), e.getCause().getMessage());
+            throw e.getCause();
+        }
+        writer.flush();
+        log.info("Exported {} batteries as {}", exported.get(), format);
+        return exported.get();
+    }
+
+    private static void writeCsvRow(Writer writer, Battery battery) {
+        try {
+            writer.write(Long.toString(battery.getId()));
+            writer.write(",\"");
+            writer.write(battery.getName().replace("\"", "\"\""));
+            writer.write("\",");
+            writer.write(Integer.toString(battery.getPostcode()));
+            writer.write(',');
+            writer.write(Long.toString(battery.getWattCapacity()));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeJsonLine(JsonGenerator generator, Battery battery) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("id", battery.getId());
+            generator.writeStringField("name", battery.getName());
+            generator.writeNumberField("postcode", battery.getPostcode());
+            generator.writeNumberField("wattCapacity", battery.getWattCapacity());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
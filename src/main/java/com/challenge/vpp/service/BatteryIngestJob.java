@@ -0,0 +1,88 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.constant.BatteryIngestJobStatus;
+import com.challenge.vpp.dto.BatteryIngestJobResponse;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+class BatteryIngestJob {
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    @Getter
+    private final UUID id = UUID.randomUUID();
+    private final long rowsTotal;
+    private final Instant submittedAt = Instant.now();
+    private final AtomicLong rowsDone = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+    private volatile BatteryIngestJobStatus status = BatteryIngestJobStatus.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+
+    BatteryIngestJob(long rowsTotal) {
+        this.rowsTotal = rowsTotal;
+    }
+
+    boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    void start() {
+        startedAt = Instant.now();
+        status = BatteryIngestJobStatus.RUNNING;
+    }
+
+    void recordDone(int rows) {
+        rowsDone.addAndGet(rows);
+    }
+
+    void recordFailed(int rows, String error) {
+        rowsFailed.addAndGet(rows);
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    void complete() {
+        finish(BatteryIngestJobStatus.COMPLETED);
+    }
+
+    void fail(String error) {
+        errors.add(error);
+        finish(BatteryIngestJobStatus.FAILED);
+    }
+
+    private void finish(BatteryIngestJobStatus finalStatus) {
+        status = finalStatus;
+        finishedAt = Instant.now();
+    }
+
+    BatteryIngestJobResponse toResponse() {
+        Instant started = startedAt;
+        Instant finished = finishedAt;
+        long done = rowsDone.get();
+        double rowsPerSecond = 0.0;
+        if (started != null) {
+            long millis = Duration.between(started, finished != null ? finished : Instant.now()).toMillis();
+            rowsPerSecond = Math.round(done * 100_000.0 / Math.max(1, millis)) / 100.0;
+        }
+        return BatteryIngestJobResponse.builder()
+                .jobId(id)
+                .status(status)
+                .rowsTotal(rowsTotal)
+                .rowsDone(done)
+                .rowsFailed(rowsFailed.get())
+                .rowsPerSecond(rowsPerSecond)
+                .submittedAt(submittedAt)
+                .startedAt(started)
+                .finishedAt(finished)
+                .errors(List.copyOf(errors))
+                .build();
+    }
+}
@@ -0,0 +1,13 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.dto.BatteryIngestJobResponse;
+import com.challenge.vpp.dto.BatteryRequest;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface BatteryIngestJobService {
+    BatteryIngestJobResponse submit(List<BatteryRequest> batteryRequests);
+
+    BatteryIngestJobResponse getJob(UUID jobId);
+}
@@ -0,0 +1,187 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.dto.BatteryIngestJobResponse;
+import com.challenge.vpp.dto.BatteryRequest;
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.challenge.vpp.exception.BatteryDataException;
+import com.challenge.vpp.exception.IngestJobRejectedException;
+import com.challenge.vpp.exception.ResourceNotFoundException;
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class BatteryIngestJobServiceImpl implements BatteryIngestJobService {
+
+    private final BatteryRepository batteryRepository;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BatteryMetrics batteryMetrics;
+    // Each chunk commits on its own, so a failure only loses that chunk and no transaction holds locks for long
+    private final TransactionTemplate chunkTransaction;
+    private final int batchSize;
+    // A full queue rejects new jobs rather than buffering unbounded payloads in memory
+    private final ThreadPoolExecutor executor;
+    private final Cache<UUID, BatteryIngestJob> jobs;
+
+    public BatteryIngestJobServiceImpl(BatteryRepository batteryRepository, Validator validator,
+                                       ApplicationEventPublisher eventPublisher, BatteryMetrics batteryMetrics,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${vpp.ingest.batch-size:1000}") int batchSize,
+                                       @Value("${vpp.ingest.jobs.threads:2}") int threads,
+                                       @Value("${vpp.ingest.jobs.queue-capacity:8}") int queueCapacity,
+                                       @Value("${vpp.ingest.jobs.retention:1h}") Duration retention) {
+        this.batteryRepository = batteryRepository;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.batteryMetrics = batteryMetrics;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        AtomicInteger workers = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "ingest-job-" + workers.incrementAndGet()));
+        // Jobs never expire while queued or running; the retention starts once the finished job is written back
+        this.jobs = Caffeine.newBuilder()
+                .expireAfter(new Expiry<UUID, BatteryIngestJob>() {
+                    @Override
+                    public long expireAfterCreate(UUID id, BatteryIngestJob job, long currentTime) {
+                        return job.isFinished() ? retention.toNanos() : Long.MAX_VALUE;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID id, BatteryIngestJob job, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(id, job, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID id, BatteryIngestJob job, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public BatteryIngestJobResponse submit(List<BatteryRequest> batteryRequests) {
+        if (batteryRequests == null || batteryRequests.isEmpty()) {
+            throw new BatteryDataException("Battery request list cannot be null or empty");
+        }
+
+        BatteryIngestJob job = new BatteryIngestJob(batteryRequests.size());
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, batteryRequests));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.getId());
+            throw new IngestJobRejectedException("Too many ingest jobs in progress, retry later");
+        }
+        return job.toResponse();
+    }
+
+    @Override
+    public BatteryIngestJobResponse getJob(UUID jobId) {
+        BatteryIngestJob job = jobs.getIfPresent(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("Ingest job not found with id: " + jobId);
+        }
+        return job.toResponse();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(BatteryIngestJob job, List<BatteryRequest> batteryRequests) {
+        job.start();
+        try {
+            for (int first = 0; first < batteryRequests.size(); first += batchSize) {
+                int end = Math.min(first + batchSize, batteryRequests.size());
+                ingestChunk(job, batteryRequests.subList(first, end), first);
+            }
+            job.complete();
+            log.info("Ingest job {} finished: {}", job.getId(), job.toResponse());
+        } catch (Exception e) {
+            log.error("Ingest job {} failed", job.getId(), e);
+            job.fail("Job aborted: " + e.getMessage());
+        } finally {
+            jobs.put(job.getId(), job);
+        }
+    }
+
+    private void ingestChunk(BatteryIngestJob job, List<BatteryRequest> chunk, int offset) {
+        List<Battery> batteries = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            String violations = violations(chunk.get(i), offset + i);
+            if (violations != null) {
+                job.recordFailed(1, "Validation failed - " + violations);
+            } else {
+                batteries.add(toBattery(chunk.get(i)));
+            }
+        }
+        if (batteries.isEmpty()) {
+            return;
+        }
+
+        try {
+            chunkTransaction.executeWithoutResult(status -> {
+                List<Battery> saved = batteryRepository.saveAll(batteries);
+                eventPublisher.publishEvent(BatteryChangedEvent.saved(saved));
+            });
+            job.recordDone(batteries.size());
+            batteryMetrics.batchIngested("job", batteries.size());
+        } catch (Exception e) {
+            job.recordFailed(batteries.size(),
+                    "Rows " + offset + "-" + (offset + chunk.size() - 1) + ": " + e.getMessage());
+        }
+    }
+
+    private String violations(BatteryRequest request, int index) {
+        if (request == null) {
+            return index + ": battery must not be null";
+        }
+        Set<ConstraintViolation<BatteryRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> index + "." + violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private Battery toBattery(BatteryRequest request) {
+        return Battery.builder()
+                .name(request.getName())
+                .postcode(request.getPostcode())
+                .wattCapacity(request.getCapacity())
+                .build();
+    }
+}
@@ -0,0 +1,12 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.constant.BatteryLoadFormat;
+import com.challenge.vpp.dto.BatteryIngestResponse;
+
+import java.io.InputStream;
+
+public interface BatteryIngestService {
+    BatteryIngestResponse load(InputStream input, BatteryLoadFormat format);
+
+    BatteryIngestResponse stream(InputStream input);
+}
@@ -0,0 +1,156 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.constant.BatteryLoadFormat;
+import com.challenge.vpp.dto.BatteryIngestResponse;
+import com.challenge.vpp.dto.BatteryRequest;
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.challenge.vpp.exception.BatteryDataException;
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryRepository;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class BatteryIngestServiceImpl implements BatteryIngestService {
+    private static final String BATTERIES_FIELD = "batteries";
+
+    private final BatteryRepository batteryRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BatteryMetrics batteryMetrics;
+    private final int batchSize;
+
+    public BatteryIngestServiceImpl(BatteryRepository batteryRepository, ObjectMapper objectMapper,
+                                    Validator validator, ApplicationEventPublisher eventPublisher,
+                                    BatteryMetrics batteryMetrics,
+                                    @Value("${vpp.ingest.batch-size:1000}") int batchSize) {
+        this.batteryRepository = batteryRepository;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.batteryMetrics = batteryMetrics;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    @Transactional
+    public BatteryIngestResponse load(InputStream input, BatteryLoadFormat format) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        BatteryRecordReader records = new BatteryRecordReader(reader, format, objectMapper, validator);
+
+        long loaded;
+        try {
+            loaded = batteryRepository.copyIn(records);
+        } catch (DataIntegrityViolationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BatteryDataException("Error loading battery data: " + e.getMessage());
+        }
+        log.info("Loaded {} batteries from {}, rejected {}", loaded, format, records.getRejected());
+        batteryMetrics.batchIngested("load", loaded);
+        eventPublisher.publishEvent(BatteryChangedEvent.reloaded());
+        return BatteryIngestResponse.builder()
+                .rowsLoaded(loaded)
+                .rowsRejected(records.getRejected())
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public BatteryIngestResponse stream(InputStream input) {
+        long loaded = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            moveToBatteries(parser);
+
+            List<Battery> chunk = new ArrayList<>(batchSize);
+            int index = 0;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                BatteryRequest request = objectMapper.readValue(parser, BatteryRequest.class);
+                validate(request, index++);
+                chunk.add(toBattery(request));
+                if (chunk.size() == batchSize) {
+                    loaded += insertChunk(chunk);
+                    chunk.clear();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new BatteryDataException("Invalid request body: batteries must be an array of objects");
+            }
+            if (!chunk.isEmpty()) {
+                loaded += insertChunk(chunk);
+            }
+        } catch (IOException e) {
+            throw new BatteryDataException("Invalid request body: " + e.getMessage());
+        }
+
+        if (loaded == 0) {
+            throw new BatteryDataException("Battery requests list cannot be empty");
+        }
+        log.info("Streamed {} batteries", loaded);
+        eventPublisher.publishEvent(BatteryChangedEvent.reloaded());
+        return BatteryIngestResponse.builder()
+                .rowsLoaded(loaded)
+                .build();
+    }
+
+    private int insertChunk(List<Battery> chunk) {
+        int inserted = batteryRepository.batchInsert(chunk);
+        batteryMetrics.batchIngested("stream", inserted);
+        return inserted;
+    }
+
+    private void moveToBatteries(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new BatteryDataException("Invalid request body: expected a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (BATTERIES_FIELD.equals(field) && value == JsonToken.START_ARRAY) {
+                return;
+            }
+            parser.skipChildren();
+        }
+        throw new BatteryDataException("Battery requests list cannot be empty");
+    }
+
+    private void validate(BatteryRequest request, int index) {
+        Set<ConstraintViolation<BatteryRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(violation -> index + "." + violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            throw new BatteryDataException("Validation failed - " + message);
+        }
+    }
+
+    private Battery toBattery(BatteryRequest request) {
+        return Battery.builder()
+                .name(request.getName())
+                .postcode(request.getPostcode())
+                .wattCapacity(request.getCapacity())
+                .build();
+    }
+}
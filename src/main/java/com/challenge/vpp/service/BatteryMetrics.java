@@ -0,0 +1,42 @@
+package com.challenge.vpp.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+// Sizes behind the operation timers; percentiles and SLO buckets come from management.metrics.distribution.*
+@Component
+public class BatteryMetrics {
+
+    private final Meter.MeterProvider<DistributionSummary> rowsScanned;
+    private final DistributionSummary namesReturned;
+    private final Meter.MeterProvider<DistributionSummary> batchesIngested;
+
+    public BatteryMetrics(MeterRegistry meterRegistry) {
+        this.rowsScanned = DistributionSummary.builder("vpp.battery.rows.scanned")
+                .description("Batteries aggregated by one range or distribution query, by where they were read from")
+                .baseUnit("rows")
+                .withRegistry(meterRegistry);
+        this.namesReturned = DistributionSummary.builder("vpp.battery.names.returned")
+                .description("Battery names returned by one range query")
+                .baseUnit("names")
+                .register(meterRegistry);
+        this.batchesIngested = DistributionSummary.builder("vpp.battery.ingest.batch.size")
+                .description("Batteries written by one ingest batch, by ingest path")
+                .baseUnit("batteries")
+                .withRegistry(meterRegistry);
+    }
+
+    public void rowsScanned(String source, long rows) {
+        rowsScanned.withTag("source", source).record(rows);
+    }
+
+    public void namesReturned(long names) {
+        namesReturned.record(names);
+    }
+
+    public void batchIngested(String path, long batteries) {
+        batchesIngested.withTag("path", path).record(batteries);
+    }
+}
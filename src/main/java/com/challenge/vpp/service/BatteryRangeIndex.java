@@ -0,0 +1,686 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.challenge.vpp.repo.BatteryRepository;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongBinaryOperator;
+
+@Component
+@Slf4j
+public class BatteryRangeIndex {
+
+    private static final Comparator<BatteryChangedEvent.Entry> POSTCODE_ORDER =
+            Comparator.comparingInt(BatteryChangedEvent.Entry::postcode)
+                    .thenComparingLong(BatteryChangedEvent.Entry::id);
+
+    // Capacity min/max are kept per block of 64 and 4096 entries so that unfiltered queries need not visit every entry
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int SUPER_BLOCK_SHIFT = 12;
+    private static final int SUPER_BLOCK_SIZE = 1 << SUPER_BLOCK_SHIFT;
+    private static final int SUPER_BLOCK_MASK = SUPER_BLOCK_SIZE - 1;
+
+    // A names window ending within the first 1/8 of the matches is selected with a heap instead of a full sort
+    private static final int PARTIAL_SORT_RATIO = 8;
+    // Work units per pool thread, so that a slice with many matches does not leave the other workers idle
+    private static final int SLICES_PER_WORKER = 4;
+    private static final long REBUILD_RETRY_SECONDS = 5;
+
+    private final BatteryRepository batteryRepository;
+    private final boolean enabled;
+    private final int parallelThreshold;
+    private final int maxDelta;
+    // Wide queries fork onto their own pool, so they neither borrow the common pool nor take every core
+    private final ForkJoinPool pool;
+    // Reloads are rebuilt off the request thread, one scan at a time, so a burst of bulk loads costs one or two scans
+    private final ScheduledExecutorService rebuilder;
+    // Locks rather than synchronized: rebuilds block on JDBC, which would pin a virtual thread's carrier. The scan
+    // only holds rebuildLock, so changes keep being applied while it runs
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile View view;
+    // Set from a reload until the rebuild that follows it is published; queries fall back to SQL meanwhile
+    private volatile boolean stale;
+    // Guarded by writeLock: whether a background rebuild is queued, and the changes to replay onto the running scan
+    private boolean rebuildQueued;
+    private List<BatteryChangedEvent> replay;
+
+    public BatteryRangeIndex(BatteryRepository batteryRepository,
+                             @Value("${vpp.range-index.enabled:false}") boolean enabled,
+                             @Value("${vpp.range-index.parallel-threshold:200000}") int parallelThreshold,
+                             @Value("${vpp.range-index.parallelism:0}") int parallelism,
+                             @Value("${vpp.range-index.max-delta:4096}") int maxDelta) {
+        this.batteryRepository = batteryRepository;
+        this.enabled = enabled;
+        this.parallelThreshold = parallelThreshold;
+        this.maxDelta = maxDelta;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : defaultParallelism(), pool -> {
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            worker.setName("range-index-" + worker.getPoolIndex());
+            return worker;
+        }, null, false);
+        this.rebuilder = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "range-index-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public record RangeStatistics(long count, long totalWattCapacity, long minWattCapacity, long maxWattCapacity,
+                                  List<String> names) {
+    }
+
+    public boolean isReady() {
+        return enabled && view != null && !stale;
+    }
+
+    @Timed(value = "vpp.battery.aggregation", extraTags = {"structure", "range-index"})
+    public RangeStatistics query(int from, int to, Long minCapacity, Long maxCapacity, boolean includeNames) {
+        return query(from, to, minCapacity, maxCapacity, includeNames, Integer.MAX_VALUE, 0);
+    }
+
+    // With names, only the window [namesOffset, namesOffset + namesLimit) of the sorted names is returned
+    @Timed(value = "vpp.battery.aggregation", extraTags = {"structure", "range-index"})
+    public RangeStatistics query(int from, int to, Long minCapacity, Long maxCapacity, boolean includeNames,
+                                 int namesLimit, int namesOffset) {
+        View current = view;
+        if (current == null) {
+            throw new IllegalStateException("Battery range index is not built");
+        }
+        Snapshot base = current.base();
+        Delta delta = current.delta();
+        int lo = base.lowerBound(from);
+        int hi = base.upperBound(to);
+        int firstRemoved = lowerBound(delta.removed(), lo);
+        int lastRemoved = lowerBound(delta.removed(), hi);
+        int firstAdded = delta.lowerBound(from);
+        int lastAdded = delta.upperBound(to);
+        int length = hi - lo - (lastRemoved - firstRemoved) + (lastAdded - firstAdded);
+        if (length <= 0) {
+            return new RangeStatistics(0, 0, 0, 0, includeNames ? List.of() : null);
+        }
+
+        if (minCapacity == null && maxCapacity == null) {
+            String[] selected = includeNames ? new String[length] : null;
+            long total = base.prefixCapacity[hi] - base.prefixCapacity[lo];
+            long lowest = Long.MAX_VALUE;
+            long highest = Long.MIN_VALUE;
+            // The block min/max only hold between removed entries, so the range is reduced gap by gap
+            int start = lo;
+            int copied = 0;
+            for (int r = firstRemoved; r <= lastRemoved; r++) {
+                int end = r < lastRemoved ? delta.removed()[r] : hi;
+                if (end > start) {
+                    lowest = Math.min(lowest, base.minCapacity(start, end));
+                    highest = Math.max(highest, base.maxCapacity(start, end));
+                    if (selected != null) {
+                        System.arraycopy(base.names, start, selected, copied, end - start);
+                    }
+                    copied += end - start;
+                }
+                if (r < lastRemoved) {
+                    total -= base.capacities[end];
+                    start = end + 1;
+                }
+            }
+            for (int a = firstAdded; a < lastAdded; a++) {
+                BatteryChangedEvent.Entry entry = delta.added()[a];
+                total += entry.wattCapacity();
+                lowest = Math.min(lowest, entry.wattCapacity());
+                highest = Math.max(highest, entry.wattCapacity());
+                if (selected != null) {
+                    selected[copied] = entry.name();
+                }
+                copied++;
+            }
+            List<String> names = includeNames ? sorted(selected, length, namesLimit, namesOffset) : null;
+            return new RangeStatistics(length, total, lowest, highest, names);
+        }
+
+        long min = minCapacity != null ? minCapacity : Long.MIN_VALUE;
+        long max = maxCapacity != null ? maxCapacity : Long.MAX_VALUE;
+        String[] selected = includeNames ? new String[hi - lo + lastAdded - firstAdded] : null;
+        RangeStatistics statistics = isParallel(hi - lo)
+                ? scanInParallel(base, delta.removed(), lo, hi, min, max, selected)
+                : scan(base, delta.removed(), lo, hi, min, max, selected, 0);
+        int count = (int) statistics.count();
+        long total = statistics.totalWattCapacity();
+        long lowest = statistics.minWattCapacity();
+        long highest = statistics.maxWattCapacity();
+        for (int a = firstAdded; a < lastAdded; a++) {
+            BatteryChangedEvent.Entry entry = delta.added()[a];
+            long capacity = entry.wattCapacity();
+            if (capacity >= min && capacity <= max) {
+                if (selected != null) {
+                    selected[count] = entry.name();
+                }
+                total += capacity;
+                lowest = Math.min(lowest, capacity);
+                highest = Math.max(highest, capacity);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return new RangeStatistics(0, 0, 0, 0, includeNames ? List.of() : null);
+        }
+        List<String> names = includeNames ? sorted(selected, count, namesLimit, namesOffset) : null;
+        return new RangeStatistics(count, total, lowest, highest, names);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onBatteriesChanged(BatteryChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        boolean untracked = event.added().stream().anyMatch(entry -> entry.id() == null);
+        if (event.reloadRequired() || untracked) {
+            requestRebuild();
+        } else {
+            apply(event);
+        }
+    }
+
+    // Scans the table into a new base and publishes it with the changes applied during the scan replayed on top
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                rebuildQueued = false;
+                replay = new ArrayList<>();
+            } finally {
+                writeLock.unlock();
+            }
+            long start = System.nanoTime();
+            Snapshot base;
+            try {
+                View current = view;
+                SnapshotBuilder builder = new SnapshotBuilder(current != null ? current.base().size() : 1024);
+                batteryRepository.scanOrderedByPostcode(battery -> builder.add(
+                        battery.getId(), battery.getName(), battery.getPostcode(), battery.getWattCapacity()));
+                base = builder.build();
+            } catch (RuntimeException e) {
+                writeLock.lock();
+                try {
+                    replay = null;
+                } finally {
+                    writeLock.unlock();
+                }
+                throw e;
+            }
+            writeLock.lock();
+            try {
+                // A change may or may not be in the scan; replaying one the scan already saw is harmless
+                View rebuilt = new View(base, Delta.EMPTY);
+                for (BatteryChangedEvent event : replay) {
+                    rebuilt = applied(rebuilt, event);
+                }
+                replay = null;
+                view = rebuilt;
+                // A reload that arrived during the scan is not covered by it, so the index stays stale for one more
+                stale = rebuildQueued;
+            } finally {
+                writeLock.unlock();
+            }
+            log.info("Built battery range index with {} entries in {} ms",
+                    base.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    // Requests arriving while a rebuild is queued share it; one arriving during a scan queues the next
+    private void requestRebuild() {
+        writeLock.lock();
+        try {
+            stale = true;
+            if (!rebuildQueued && !rebuilder.isShutdown()) {
+                rebuildQueued = true;
+                rebuilder.execute(this::rebuildInBackground);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void rebuildInBackground() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("Rebuilding the battery range index failed; range queries use the database until a retry "
+                    + "in {} s succeeds", REBUILD_RETRY_SECONDS, e);
+            if (!rebuilder.isShutdown()) {
+                rebuilder.schedule(this::requestRebuild, REBUILD_RETRY_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private void apply(BatteryChangedEvent event) {
+        writeLock.lock();
+        try {
+            if (replay != null) {
+                replay.add(event);
+            }
+            View current = view;
+            if (current != null) {
+                view = applied(current, event);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private View applied(View current, BatteryChangedEvent event) {
+        Delta delta = overlay(current.base(), current.delta(), event);
+        if (delta.size() <= maxDelta) {
+            return new View(current.base(), delta);
+        }
+        long start = System.nanoTime();
+        View compacted = new View(compact(current.base(), delta), Delta.EMPTY);
+        log.debug("Compacted {} changes into the battery range index in {} ms",
+                delta.size(), (System.nanoTime() - start) / 1_000_000);
+        return compacted;
+    }
+
+    // Costs O(delta + log n): the base arrays are shared with the previous view and only the overlay is copied
+    private static Delta overlay(Snapshot base, Delta delta, BatteryChangedEvent event) {
+        Map<Long, BatteryChangedEvent.Entry> added = new HashMap<>();
+        for (BatteryChangedEvent.Entry entry : delta.added()) {
+            added.put(entry.id(), entry);
+        }
+        List<Integer> removed = new ArrayList<>();
+        // Added ids are dropped first so that replaying a change already picked up by a rebuild is harmless
+        for (BatteryChangedEvent.Entry entry : event.removed()) {
+            int position = base.positionOf(entry.postcode(), entry.id());
+            if (added.remove(entry.id()) == null && position < 0) {
+                position = base.positionOfId(entry.id());
+            }
+            if (position >= 0) {
+                removed.add(position);
+            }
+        }
+        for (BatteryChangedEvent.Entry entry : event.added()) {
+            int position = base.positionOf(entry.postcode(), entry.id());
+            if (position >= 0) {
+                removed.add(position);
+            }
+            added.put(entry.id(), entry);
+        }
+
+        int[] positions = Arrays.copyOf(delta.removed(), delta.removed().length + removed.size());
+        for (int i = 0; i < removed.size(); i++) {
+            positions[delta.removed().length + i] = removed.get(i);
+        }
+        BatteryChangedEvent.Entry[] entries = added.values().toArray(BatteryChangedEvent.Entry[]::new);
+        Arrays.sort(entries, POSTCODE_ORDER);
+        return new Delta(entries, Arrays.stream(positions).sorted().distinct().toArray());
+    }
+
+    private static Snapshot compact(Snapshot base, Delta delta) {
+        BatteryChangedEvent.Entry[] added = delta.added();
+        int[] removed = delta.removed();
+        SnapshotBuilder builder = new SnapshotBuilder(base.size() - removed.length + added.length);
+        int next = 0;
+        int r = 0;
+        for (int i = 0; i < base.size(); i++) {
+            while (next < added.length && precedes(added[next], base, i)) {
+                builder.add(added[next++]);
+            }
+            if (r < removed.length && removed[r] == i) {
+                r++;
+            } else {
+                builder.add(base.ids[i], base.names[i], base.postcodes[i], base.capacities[i]);
+            }
+        }
+        while (next < added.length) {
+            builder.add(added[next++]);
+        }
+        return builder.build();
+    }
+
+    private static boolean precedes(BatteryChangedEvent.Entry entry, Snapshot snapshot, int i) {
+        return entry.postcode() < snapshot.postcodes[i]
+                || (entry.postcode() == snapshot.postcodes[i] && entry.id() < snapshot.ids[i]);
+    }
+
+    private static int lowerBound(int[] sorted, int value) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    private boolean isParallel(int length) {
+        return length >= parallelThreshold && pool.getParallelism() > 1;
+    }
+
+    // Each slice compacts its matches to the start of its own part of selected; the parts are then joined up in order
+    private RangeStatistics scanInParallel(Snapshot current, int[] removed, int lo, int hi, long min, long max,
+                                           String[] selected) {
+        int sliceLength = Math.ceilDiv(hi - lo, pool.getParallelism() * SLICES_PER_WORKER);
+        List<ForkJoinTask<RangeStatistics>> slices = new ArrayList<>();
+        for (int start = lo; start < hi; start += sliceLength) {
+            int from = start;
+            int to = Math.min(hi, start + sliceLength);
+            slices.add(ForkJoinTask.adapt(() -> scan(current, removed, from, to, min, max, selected, from - lo)));
+        }
+        pool.submit(() -> ForkJoinTask.invokeAll(slices)).join();
+
+        int count = 0;
+        long total = 0;
+        long lowest = Long.MAX_VALUE;
+        long highest = Long.MIN_VALUE;
+        for (int i = 0; i < slices.size(); i++) {
+            RangeStatistics slice = slices.get(i).join();
+            if (slice.count() == 0) {
+                continue;
+            }
+            if (selected != null) {
+                System.arraycopy(selected, i * sliceLength, selected, count, (int) slice.count());
+            }
+            count += (int) slice.count();
+            total += slice.totalWattCapacity();
+            lowest = Math.min(lowest, slice.minWattCapacity());
+            highest = Math.max(highest, slice.maxWattCapacity());
+        }
+        return new RangeStatistics(count, total, lowest, highest, null);
+    }
+
+    // Entries at the sorted removed positions are skipped; they are replaced or deleted in the overlay
+    private static RangeStatistics scan(Snapshot current, int[] removed, int lo, int hi, long min, long max,
+                                        String[] selected, int offset) {
+        int count = 0;
+        long total = 0;
+        long lowest = Long.MAX_VALUE;
+        long highest = Long.MIN_VALUE;
+        int r = lowerBound(removed, lo);
+        int skip = r < removed.length ? removed[r] : Integer.MAX_VALUE;
+        for (int i = lo; i < hi; i++) {
+            if (i == skip) {
+                skip = ++r < removed.length ? removed[r] : Integer.MAX_VALUE;
+                continue;
+            }
+            long capacity = current.capacities[i];
+            if (capacity >= min && capacity <= max) {
+                if (selected != null) {
+                    selected[offset + count] = current.names[i];
+                }
+                total += capacity;
+                lowest = Math.min(lowest, capacity);
+                highest = Math.max(highest, capacity);
+                count++;
+            }
+        }
+        return new RangeStatistics(count, total, lowest, highest, null);
+    }
+
+    // Returns the requested window of names[0, length) in sorted order. A window that ends early in the order is
+    // taken from a bounded heap; otherwise the prefix is sorted in place. Only the window is copied out, so a cached
+    // page does not keep the whole match array alive
+    private List<String> sorted(String[] names, int length, int limit, int offset) {
+        if (offset >= length || limit == 0) {
+            return List.of();
+        }
+        int end = (int) Math.min(length, (long) offset + limit);
+        if (end <= length / PARTIAL_SORT_RATIO) {
+            return List.copyOf(Arrays.asList(smallest(names, length, end)).subList(offset, end));
+        }
+        if (isParallel(length)) {
+            // Invoked from a pool worker, the parallel sort forks its subtasks onto this pool rather than the common one
+            pool.submit(() -> Arrays.parallelSort(names, 0, length)).join();
+        } else {
+            Arrays.sort(names, 0, length);
+        }
+        return List.copyOf(Arrays.asList(names).subList(offset, end));
+    }
+
+    private static String[] smallest(String[] names, int length, int count) {
+        PriorityQueue<String> heap = new PriorityQueue<>(count, Comparator.reverseOrder());
+        for (int i = 0; i < length; i++) {
+            if (heap.size() < count) {
+                heap.add(names[i]);
+            } else if (names[i].compareTo(heap.peek()) < 0) {
+                heap.poll();
+                heap.add(names[i]);
+            }
+        }
+        String[] head = new String[count];
+        for (int i = count - 1; i >= 0; i--) {
+            head[i] = heap.poll();
+        }
+        return head;
+    }
+
+    private static int defaultParallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    // Incremental changes are kept in a small overlay on top of an immutable base; the base arrays are only rebuilt
+    // once the overlay holds more than vpp.range-index.max-delta changes
+    private record View(Snapshot base, Delta delta) {
+    }
+
+    // added is sorted by postcode and id; removed holds the sorted base positions that are deleted or replaced
+    private record Delta(BatteryChangedEvent.Entry[] added, int[] removed) {
+        static final Delta EMPTY = new Delta(new BatteryChangedEvent.Entry[0], new int[0]);
+
+        int size() {
+            return added.length + removed.length;
+        }
+
+        int lowerBound(int postcode) {
+            int lo = 0;
+            int hi = added.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (added[mid].postcode() < postcode) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        int upperBound(int postcode) {
+            int lo = 0;
+            int hi = added.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (added[mid].postcode() <= postcode) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private record Snapshot(long[] ids, int[] postcodes, long[] capacities, String[] names, long[] prefixCapacity,
+                            long[] blockMinCapacity, long[] blockMaxCapacity,
+                            long[] superBlockMinCapacity, long[] superBlockMaxCapacity) {
+
+        int size() {
+            return ids.length;
+        }
+
+        long minCapacity(int lo, int hi) {
+            return reduce(lo, hi, blockMinCapacity, superBlockMinCapacity, Math::min, Long.MAX_VALUE);
+        }
+
+        long maxCapacity(int lo, int hi) {
+            return reduce(lo, hi, blockMaxCapacity, superBlockMaxCapacity, Math::max, Long.MIN_VALUE);
+        }
+
+        private long reduce(int lo, int hi, long[] blocks, long[] superBlocks, LongBinaryOperator op, long result) {
+            int i = lo;
+            for (; i < hi && (i & BLOCK_MASK) != 0; i++) {
+                result = op.applyAsLong(result, capacities[i]);
+            }
+            for (; i + BLOCK_SIZE <= hi && (i & SUPER_BLOCK_MASK) != 0; i += BLOCK_SIZE) {
+                result = op.applyAsLong(result, blocks[i >>> BLOCK_SHIFT]);
+            }
+            for (; i + SUPER_BLOCK_SIZE <= hi; i += SUPER_BLOCK_SIZE) {
+                result = op.applyAsLong(result, superBlocks[i >>> SUPER_BLOCK_SHIFT]);
+            }
+            for (; i + BLOCK_SIZE <= hi; i += BLOCK_SIZE) {
+                result = op.applyAsLong(result, blocks[i >>> BLOCK_SHIFT]);
+            }
+            for (; i < hi; i++) {
+                result = op.applyAsLong(result, capacities[i]);
+            }
+            return result;
+        }
+
+        // Entries of one postcode are ordered by id, so the position is found by binary search
+        int positionOf(int postcode, long id) {
+            int position = Arrays.binarySearch(ids, lowerBound(postcode), upperBound(postcode), id);
+            return position >= 0 ? position : -1;
+        }
+
+        // Only for a removal that is not where its postcode says, i.e. a change already picked up by a rebuild
+        int positionOfId(long id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int lowerBound(int postcode) {
+            int lo = 0;
+            int hi = postcodes.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (postcodes[mid] < postcode) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        int upperBound(int postcode) {
+            int lo = 0;
+            int hi = postcodes.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (postcodes[mid] <= postcode) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private static final class SnapshotBuilder {
+        private long[] ids;
+        private int[] postcodes;
+        private long[] capacities;
+        private String[] names;
+        private int size;
+
+        SnapshotBuilder(int capacity) {
+            int initial = Math.max(capacity, 16);
+            ids = new long[initial];
+            postcodes = new int[initial];
+            capacities = new long[initial];
+            names = new String[initial];
+        }
+
+        void add(BatteryChangedEvent.Entry entry) {
+            add(entry.id(), entry.name(), entry.postcode(), entry.wattCapacity());
+        }
+
+        void add(long id, String name, int postcode, long capacity) {
+            if (size == ids.length) {
+                int grown = ids.length * 2;
+                ids = Arrays.copyOf(ids, grown);
+                postcodes = Arrays.copyOf(postcodes, grown);
+                capacities = Arrays.copyOf(capacities, grown);
+                names = Arrays.copyOf(names, grown);
+            }
+            ids[size] = id;
+            postcodes[size] = postcode;
+            capacities[size] = capacity;
+            names[size] = name;
+            size++;
+        }
+
+        Snapshot build() {
+            long[] prefix = new long[size + 1];
+            long[] blockMin = blockArray(BLOCK_SHIFT, Long.MAX_VALUE);
+            long[] blockMax = blockArray(BLOCK_SHIFT, Long.MIN_VALUE);
+            long[] superBlockMin = blockArray(SUPER_BLOCK_SHIFT, Long.MAX_VALUE);
+            long[] superBlockMax = blockArray(SUPER_BLOCK_SHIFT, Long.MIN_VALUE);
+            for (int i = 0; i < size; i++) {
+                long capacity = capacities[i];
+                prefix[i + 1] = prefix[i] + capacity;
+                blockMin[i >>> BLOCK_SHIFT] = Math.min(blockMin[i >>> BLOCK_SHIFT], capacity);
+                blockMax[i >>> BLOCK_SHIFT] = Math.max(blockMax[i >>> BLOCK_SHIFT], capacity);
+                superBlockMin[i >>> SUPER_BLOCK_SHIFT] = Math.min(superBlockMin[i >>> SUPER_BLOCK_SHIFT], capacity);
+                superBlockMax[i >>> SUPER_BLOCK_SHIFT] = Math.max(superBlockMax[i >>> SUPER_BLOCK_SHIFT], capacity);
+            }
+            return new Snapshot(Arrays.copyOf(ids, size), Arrays.copyOf(postcodes, size),
+                    Arrays.copyOf(capacities, size), Arrays.copyOf(names, size), prefix,
+                    blockMin, blockMax, superBlockMin, superBlockMax);
+        }
+
+        private long[] blockArray(int shift, long identity) {
+            long[] blocks = new long[(size + (1 << shift) - 1) >>> shift];
+            Arrays.fill(blocks, identity);
+            return blocks;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.constant.BatteryLoadFormat;
+import com.challenge.vpp.dto.BatteryRequest;
+import com.challenge.vpp.exception.BatteryDataException;
+import com.challenge.vpp.model.Battery;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+@Slf4j
+public class BatteryRecordReader implements Iterator<Battery> {
+
+    private static final String CSV_HEADER_PREFIX = "name,";
+
+    private final BufferedReader reader;
+    private final BatteryLoadFormat format;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Getter
+    private long rejected;
+    private long lineNumber;
+    private Battery next;
+
+    public BatteryRecordReader(BufferedReader reader, BatteryLoadFormat format,
+                               ObjectMapper objectMapper, Validator validator) {
+        this.reader = reader;
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            String line = readLine();
+            if (line == null) {
+                return false;
+            }
+            lineNumber++;
+            if (line.isBlank() || isCsvHeader(line)) {
+                continue;
+            }
+            next = parse(line);
+        }
+        return true;
+    }
+
+    @Override
+    public Battery next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Battery battery = next;
+        next = null;
+        return battery;
+    }
+
+    private String readLine() {
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new BatteryDataException("Error reading battery data: " + e.getMessage());
+        }
+    }
+
+    private boolean isCsvHeader(String line) {
+        return format == BatteryLoadFormat.CSV && lineNumber == 1
+                && line.trim().toLowerCase().startsWith(CSV_HEADER_PREFIX);
+    }
+
+    private Battery parse(String line) {
+        try {
+            BatteryRequest request = format == BatteryLoadFormat.CSV
+                    ? parseCsv(line)
+                    : objectMapper.readValue(line, BatteryRequest.class);
+            if (request != null && validator.validate(request).isEmpty()) {
+                return Battery.builder()
+                        .name(request.getName())
+                        .postcode(request.getPostcode())
+                        .wattCapacity(request.getCapacity())
+                        .build();
+            }
+        } catch (Exception e) {
+            log.debug("Unable to parse battery on line {}: {}", lineNumber, e.getMessage());
+        }
+        rejected++;
+        return null;
+    }
+
+    private BatteryRequest parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != 3) {
+            return null;
+        }
+        return BatteryRequest.builder()
+                .name(fields.get(0))
+                .postcode(Integer.valueOf(fields.get(1).trim()))
+                .capacity(Long.valueOf(fields.get(2).trim()))
+                .build();
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
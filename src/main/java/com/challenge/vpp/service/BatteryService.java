@@ -1,8 +1,13 @@
 package com.challenge.vpp.service;
 
+import com.challenge.vpp.constant.BatterySeekOrder;
+import com.challenge.vpp.dto.BatteryCapacityDistributionResponse;
+import com.challenge.vpp.dto.BatteryCursorPage;
 import com.challenge.vpp.dto.BatteryRequest;
 import com.challenge.vpp.dto.BatteryResponse;
 import com.challenge.vpp.dto.BatteryStatisticsResponse;
+import com.challenge.vpp.dto.BatterySummaryResponse;
+import com.challenge.vpp.dto.BatteryUpsertResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -10,7 +15,19 @@ import java.util.List;
 
 public interface BatteryService {
     void saveAll(List<BatteryRequest> batteryRequests);
-    BatteryStatisticsResponse getBatteriesInRange(int from, int to, Long minCapacity, Long maxCapacity);
+
+    void bulkSave(List<BatteryRequest> batteryRequests);
+
+    BatteryUpsertResponse upsertAll(List<BatteryRequest> batteryRequests);
+
+    BatteryStatisticsResponse getBatteriesInRange(int from, int to, Long minCapacity, Long maxCapacity,
+                                                  Integer limit, int offset);
+
+    BatteryStatisticsResponse getStatisticsInRange(int from, int to, Long minCapacity, Long maxCapacity);
+
+    BatterySummaryResponse getSnapshotSummary(int from, int to);
+
+    BatteryCapacityDistributionResponse getCapacityDistribution(int from, int to, List<Double> percentiles, int buckets);
 
     BatteryResponse getBatteryById(Long id);
 
@@ -19,4 +36,6 @@ public interface BatteryService {
     BatteryResponse updateBattery(Long id, BatteryRequest batteryRequest);
 
     Page<BatteryResponse> getAllBatteries(Pageable pageable);
+
+    BatteryCursorPage getBatteriesAfter(String cursor, BatterySeekOrder orderBy, int size);
 }
@@ -1,97 +1,214 @@
 package com.challenge.vpp.service;
 
+import com.challenge.vpp.constant.BatterySeekOrder;
+import com.challenge.vpp.dto.BatteryCapacityDistributionResponse;
+import com.challenge.vpp.dto.BatteryCursorPage;
 import com.challenge.vpp.dto.BatteryRequest;
 import com.challenge.vpp.dto.BatteryResponse;
 import com.challenge.vpp.dto.BatteryStatisticsResponse;
+import com.challenge.vpp.dto.BatterySummaryResponse;
+import com.challenge.vpp.dto.BatteryUpsertResponse;
+import com.challenge.vpp.event.BatteryChangedEvent;
 import com.challenge.vpp.exception.BatteryDataException;
 import com.challenge.vpp.exception.InvalidCapacityRangeException;
 import com.challenge.vpp.exception.InvalidPostcodeRangeException;
 import com.challenge.vpp.exception.ResourceNotFoundException;
+import com.challenge.vpp.exception.WriteBufferFullException;
 import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryBulkRepository.UpsertedBattery;
 import com.challenge.vpp.repo.BatteryRepository;
-import jakarta.transaction.Transactional;
+import com.challenge.vpp.repo.projection.BatteryRangeSummary;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Comparator;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "vpp.battery.service", description = "Time spent in one battery service operation")
 public class BatteryServiceImpl implements BatteryService{
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_DISTRIBUTION_BUCKETS = 100;
+
     private final BatteryRepository batteryRepository;
+    private final BatteryRangeIndex batteryRangeIndex;
+    private final BatteryStatisticsCache batteryStatisticsCache;
+    private final BatteryCapacitySketches batteryCapacitySketches;
+    private final BatterySummarySnapshots batterySummarySnapshots;
+    private final BatteryWriteBehindBuffer batteryWriteBehindBuffer;
+    private final BatteryMetrics batteryMetrics;
+    private final ApplicationEventPublisher eventPublisher;
     @Override
-    @Transactional
     public void saveAll(List<BatteryRequest> batteryRequests) {
         if (batteryRequests == null || batteryRequests.isEmpty()) {
             throw new BatteryDataException("Battery request list cannot be null or empty");
         }
+        // No surrounding transaction: a caller waiting on the write-behind buffer must not hold a connection
+        if (batteryWriteBehindBuffer.accepts(batteryRequests)) {
+            CompletableFuture<Void> durable = batteryWriteBehindBuffer.submit(batteryRequests);
+            try {
+                durable.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof DataIntegrityViolationException conflict) {
+                    throw conflict;
+                }
+                if (e.getCause() instanceof TimeoutException) {
+                    throw new WriteBufferFullException(
+                            "Battery registration was not confirmed in time and may still be written, retry later");
+                }
+                throw new BatteryDataException("Error saving battery data: " + e.getCause().getMessage());
+            }
+            return;
+        }
 
         try {
             List<Battery> batteries = batteryRequests.stream()
-                    .map(req -> Battery.builder()
-                            .name(req.getName())
-                            .postcode(req.getPostcode())
-                            .wattCapacity(req.getCapacity())
-                            .build())
+                    .map(this::toBattery)
                     .collect(Collectors.toList());
-            batteryRepository.saveAll(batteries);
+            List<Battery> saved = batteryRepository.saveAll(batteries);
+            batteryMetrics.batchIngested("save", saved.size());
+            eventPublisher.publishEvent(BatteryChangedEvent.saved(saved));
+        } catch (DataIntegrityViolationException e) {
+            throw e;
         } catch (Exception e) {
             throw new BatteryDataException("Error saving battery data: " + e.getMessage());
         }
     }
 
     @Override
-    public BatteryStatisticsResponse getBatteriesInRange(int from, int to, Long minCapacity, Long maxCapacity) {
-        // Validate postcode range
-        if (from > to) {
-            throw new InvalidPostcodeRangeException(
-                "From postcode (" + from + ") must be less than or equal to to postcode (" + to + ")");
+    @Transactional
+    public void bulkSave(List<BatteryRequest> batteryRequests) {
+        if (batteryRequests == null || batteryRequests.isEmpty()) {
+            throw new BatteryDataException("Battery request list cannot be null or empty");
         }
 
-        // Validate capacity range if both are provided
-        if (minCapacity != null && maxCapacity != null && minCapacity > maxCapacity) {
-            throw new InvalidCapacityRangeException(
-                "Minimum capacity (" + minCapacity + ") must be less than or equal to maximum capacity (" + maxCapacity + ")");
+        try {
+            List<Battery> batteries = batteryRequests.stream()
+                    .map(this::toBattery)
+                    .collect(Collectors.toList());
+            int inserted = batteryRepository.batchInsert(batteries);
+            log.info("Bulk inserted {} batteries", inserted);
+            batteryMetrics.batchIngested("bulk", inserted);
+            // batchInsert assigns the ids, so the change is published as a delta rather than a reload
+            eventPublisher.publishEvent(BatteryChangedEvent.saved(batteries));
+        } catch (DataIntegrityViolationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BatteryDataException("Error saving battery data: " + e.getMessage());
         }
+    }
 
-        List<Battery> batteries;
+    @Override
+    @Transactional
+    public BatteryUpsertResponse upsertAll(List<BatteryRequest> batteryRequests) {
+        if (batteryRequests == null || batteryRequests.isEmpty()) {
+            throw new BatteryDataException("Battery request list cannot be null or empty");
+        }
+
+        List<UpsertedBattery> upserted;
         try {
-            if (minCapacity != null && maxCapacity != null) {
-                batteries = batteryRepository.findByPostcodeBetweenAndWattCapacityBetween(from, to, minCapacity, maxCapacity);
-            } else if (minCapacity != null) {
-                batteries = batteryRepository.findByPostcodeBetweenAndWattCapacityGreaterThanEqual(from, to, minCapacity);
-            } else if (maxCapacity != null) {
-                batteries = batteryRepository.findByPostcodeBetweenAndWattCapacityLessThanEqual(from, to, maxCapacity);
-            } else {
-                batteries = batteryRepository.findByPostcodeBetween(from, to);
-            }
+            upserted = batteryRepository.upsert(batteryRequests.stream().map(this::toBattery).toList());
         } catch (Exception e) {
-            throw new BatteryDataException("Error retrieving battery data: " + e.getMessage());
+            throw new BatteryDataException("Error saving battery data: " + e.getMessage());
         }
+        batteryMetrics.batchIngested("upsert", batteryRequests.size());
+        List<Battery> replaced = upserted.stream().map(UpsertedBattery::previous).filter(Objects::nonNull).toList();
+        eventPublisher.publishEvent(BatteryChangedEvent.upserted(
+                upserted.stream().map(UpsertedBattery::battery).toList(), replaced));
+        return BatteryUpsertResponse.builder()
+                .inserted(upserted.size() - replaced.size())
+                .updated(replaced.size())
+                .unchanged(batteryRequests.size() - upserted.size())
+                .build();
+    }
 
-        List<String> names = batteries.stream()
-                .map(Battery::getName)
-                .sorted(Comparator.naturalOrder())
-                .collect(Collectors.toList());
+    @Override
+    @Transactional(readOnly = true)
+    public BatteryStatisticsResponse getBatteriesInRange(int from, int to, Long minCapacity, Long maxCapacity,
+                                                         Integer limit, int offset) {
+        validateRange(from, to, minCapacity, maxCapacity);
+        if ((limit != null && limit < 0) || offset < 0) {
+            throw new BatteryDataException("Limit and offset must not be negative");
+        }
+        return batteryStatisticsCache.get(
+                new BatteryStatisticsCache.Key(from, to, minCapacity, maxCapacity, true, limit, offset),
+                () -> loadBatteriesInRange(from, to, minCapacity, maxCapacity, limit, offset));
+    }
 
-        long total = batteries.stream().mapToLong(Battery::getWattCapacity).sum();
-        double average = batteries.isEmpty() ? 0.0 :
-                Math.round((double) total / batteries.size() * 100.0) / 100.0;
-        log.info("Total watt capacity: {} & average {}" ,total, average);
-        return BatteryStatisticsResponse.builder()
-                .batteries(names)
-                .totalWattCapacity(total)
-                .averageWattCapacity(average)
+    @Override
+    @Transactional(readOnly = true)
+    public BatteryStatisticsResponse getStatisticsInRange(int from, int to, Long minCapacity, Long maxCapacity) {
+        validateRange(from, to, minCapacity, maxCapacity);
+        return batteryStatisticsCache.get(new BatteryStatisticsCache.Key(from, to, minCapacity, maxCapacity, false),
+                () -> loadStatisticsInRange(from, to, minCapacity, maxCapacity));
+    }
+
+    @Override
+    public BatterySummaryResponse getSnapshotSummary(int from, int to) {
+        validateRange(from, to, null, null);
+        BatterySummarySnapshots.Summary summary;
+        try {
+            summary = batterySummarySnapshots.summarize(from, to);
+        } catch (Exception e) {
+            throw new BatteryDataException("Error retrieving battery data: " + e.getMessage());
+        }
+        batteryMetrics.rowsScanned("snapshot", summary.count());
+        return BatterySummaryResponse.builder()
+                .batteryCount(summary.count())
+                .totalWattCapacity(summary.totalWattCapacity())
+                .averageWattCapacity(average(summary.totalWattCapacity(), summary.count()))
+                .minWattCapacity(summary.minWattCapacity())
+                .maxWattCapacity(summary.maxWattCapacity())
+                .snapshotVersion(summary.version())
+                .snapshotTakenAt(summary.takenAt())
+                .snapshotAgeMillis(Math.max(0, Duration.between(summary.takenAt(), Instant.now()).toMillis()))
                 .build();
     }
 
     @Override
+    public BatteryCapacityDistributionResponse getCapacityDistribution(int from, int to, List<Double> percentiles,
+                                                                       int buckets) {
+        validateRange(from, to, null, null);
+        if (percentiles.stream().anyMatch(percentile -> percentile == null || !(percentile > 0 && percentile <= 100))) {
+            throw new BatteryDataException("Percentiles must be greater than 0 and at most 100");
+        }
+        if (buckets < 0 || buckets > MAX_DISTRIBUTION_BUCKETS) {
+            throw new BatteryDataException("Buckets must be between 0 and " + MAX_DISTRIBUTION_BUCKETS);
+        }
+
+        Histogram histogram;
+        try {
+            histogram = batteryCapacitySketches.merge(from, to);
+        } catch (Exception e) {
+            throw new BatteryDataException("Error retrieving battery data: " + e.getMessage());
+        }
+        batteryMetrics.rowsScanned("sketch", histogram.getTotalCount());
+        return toDistributionResponse(histogram, percentiles, buckets);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public BatteryResponse getBatteryById(Long id) {
         Battery battery = batteryRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Battery not found with id: " + id));
@@ -100,10 +217,10 @@ public class BatteryServiceImpl implements BatteryService{
 
     @Override
     public void deleteBattery(Long id) {
-        if (!batteryRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Battery not found with id: " + id);
-        }
-        batteryRepository.deleteById(id);
+        Battery battery = batteryRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Battery not found with id: " + id));
+        batteryRepository.delete(battery);
+        eventPublisher.publishEvent(BatteryChangedEvent.deleted(battery));
     }
 
     @Override
@@ -111,23 +228,215 @@ public class BatteryServiceImpl implements BatteryService{
         Battery battery = batteryRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Battery not found with id: " + id));
 
+        BatteryChangedEvent.Entry before = BatteryChangedEvent.Entry.of(battery);
         updateBatteryEntity(battery, batteryRequest);
         Battery updatedBattery = batteryRepository.save(battery);
+        eventPublisher.publishEvent(BatteryChangedEvent.updated(before, updatedBattery));
         return toBatteryResponse(updatedBattery);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<BatteryResponse> getAllBatteries(Pageable pageable) {
         return batteryRepository.findAll(pageable)
                 .map(this::toBatteryResponse);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public BatteryCursorPage getBatteriesAfter(String cursor, BatterySeekOrder orderBy, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BatteryDataException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        BatteryCursor position = cursor == null || cursor.isBlank()
+                ? BatteryCursor.first(orderBy)
+                : BatteryCursor.decode(cursor);
+
+        List<Battery> batteries = position.order() == BatterySeekOrder.POSTCODE
+                ? batteryRepository.findPageAfterPostcodeAndId(position.postcode(), position.id(), size + 1)
+                : batteryRepository.findPageAfterId(position.id(), size + 1);
+
+        boolean hasNext = batteries.size() > size;
+        List<Battery> page = hasNext ? batteries.subList(0, size) : batteries;
+        return BatteryCursorPage.builder()
+                .content(page.stream().map(this::toBatteryResponse).toList())
+                .size(page.size())
+                .nextCursor(hasNext ? BatteryCursor.after(position.order(), page.get(size - 1)).encode() : null)
+                .build();
+    }
+
+    private BatteryStatisticsResponse loadBatteriesInRange(int from, int to, Long minCapacity, Long maxCapacity,
+                                                           Integer limit, int offset) {
+        int namesLimit = limit != null ? limit : Integer.MAX_VALUE;
+        if (batteryRangeIndex.isReady()) {
+            BatteryRangeIndex.RangeStatistics statistics =
+                    batteryRangeIndex.query(from, to, minCapacity, maxCapacity, true, namesLimit, offset);
+            batteryMetrics.rowsScanned("index", statistics.count());
+            batteryMetrics.namesReturned(statistics.names().size());
+            return toStatisticsResponse(statistics);
+        }
+
+        BatteryRangeSummary summary;
+        List<String> names;
+        try {
+            summary = summarize(from, to, minCapacity, maxCapacity);
+            if (limit == null && offset == 0) {
+                names = batteryRepository.findNamesInRange(from, to, lowerBound(minCapacity), upperBound(maxCapacity));
+            } else if (namesLimit == 0 || offset >= summary.getCount()) {
+                names = List.of();
+            } else {
+                names = batteryRepository.findNamesInRange(from, to, lowerBound(minCapacity), upperBound(maxCapacity),
+                        namesLimit, offset);
+            }
+        } catch (Exception e) {
+            throw new BatteryDataException("Error retrieving battery data: " + e.getMessage());
+        }
+        batteryMetrics.namesReturned(names.size());
+        return toStatisticsResponse(summary, names);
+    }
+
+    private BatteryStatisticsResponse loadStatisticsInRange(int from, int to, Long minCapacity, Long maxCapacity) {
+        if (batteryRangeIndex.isReady()) {
+            BatteryRangeIndex.RangeStatistics statistics =
+                    batteryRangeIndex.query(from, to, minCapacity, maxCapacity, false);
+            batteryMetrics.rowsScanned("index", statistics.count());
+            return toStatisticsResponse(statistics);
+        }
+
+        BatteryRangeSummary summary;
+        try {
+            summary = summarize(from, to, minCapacity, maxCapacity);
+        } catch (Exception e) {
+            throw new BatteryDataException("Error retrieving battery data: " + e.getMessage());
+        }
+        return toStatisticsResponse(summary, null);
+    }
+
+    private BatteryRangeSummary summarize(int from, int to, Long minCapacity, Long maxCapacity) {
+        // Without a capacity filter every battery of a postcode counts, so the trigger-maintained rollup answers directly
+        if (minCapacity == null && maxCapacity == null) {
+            BatteryRangeSummary summary = batteryRepository.summarizePostcodeRollup(from, to);
+            batteryMetrics.rowsScanned("rollup", summary.getCount());
+            return summary;
+        }
+        BatteryRangeSummary summary =
+                batteryRepository.summarizeRange(from, to, lowerBound(minCapacity), upperBound(maxCapacity));
+        batteryMetrics.rowsScanned("table", summary.getCount());
+        return summary;
+    }
+
+    private void validateRange(int from, int to, Long minCapacity, Long maxCapacity) {
+        // Validate postcode range
+        if (from > to) {
+            throw new InvalidPostcodeRangeException(
+                "From postcode (" + from + ") must be less than or equal to to postcode (" + to + ")");
+        }
+
+        // Validate capacity range if both are provided
+        if (minCapacity != null && maxCapacity != null && minCapacity > maxCapacity) {
+            throw new InvalidCapacityRangeException(
+                "Minimum capacity (" + minCapacity + ") must be less than or equal to maximum capacity (" + maxCapacity + ")");
+        }
+    }
+
+    private static long lowerBound(Long minCapacity) {
+        return minCapacity != null ? minCapacity : Long.MIN_VALUE;
+    }
+
+    private static long upperBound(Long maxCapacity) {
+        return maxCapacity != null ? maxCapacity : Long.MAX_VALUE;
+    }
+
+    private BatteryStatisticsResponse toStatisticsResponse(BatteryRangeIndex.RangeStatistics statistics) {
+        return toStatisticsResponse(statistics.count(), statistics.totalWattCapacity(),
+                statistics.minWattCapacity(), statistics.maxWattCapacity(), statistics.names());
+    }
+
+    private BatteryStatisticsResponse toStatisticsResponse(BatteryRangeSummary summary, List<String> names) {
+        return toStatisticsResponse(summary.getCount(), summary.getTotalWattCapacity(),
+                summary.getMinWattCapacity(), summary.getMaxWattCapacity(), names);
+    }
+
+    private BatteryStatisticsResponse toStatisticsResponse(long count, long total, long min, long max, List<String> names) {
+        double average = average(total, count);
+        if (log.isDebugEnabled()) {
+            log.debug("Total watt capacity: {} & average {}", total, average);
+        }
+        return BatteryStatisticsResponse.builder()
+                .batteries(names)
+                .batteryCount(count)
+                .totalWattCapacity(total)
+                .averageWattCapacity(average)
+                .minWattCapacity(min)
+                .maxWattCapacity(max)
+                .build();
+    }
+
+    // Rounds half-up to two decimals in long arithmetic, so large totals are not distorted by a double division
+    private static double average(long total, long count) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long hundredths = total / count * 100 + (total % count * 200 + count) / (2 * count);
+        return hundredths / 100.0;
+    }
+
+    private static BatteryCapacityDistributionResponse toDistributionResponse(Histogram histogram,
+                                                                             List<Double> percentiles, int buckets) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        percentiles.forEach(percentile -> values.put(
+                "p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString(),
+                histogram.getValueAtPercentile(percentile)));
+        return BatteryCapacityDistributionResponse.builder()
+                .batteryCount(histogram.getTotalCount())
+                .minWattCapacity(histogram.getMinValue())
+                .maxWattCapacity(histogram.getMaxValue())
+                .averageWattCapacity(Math.round(histogram.getMean() * 100) / 100.0)
+                .percentiles(values)
+                .buckets(toBuckets(histogram, buckets))
+                .build();
+    }
+
+    // Equal-width buckets between the smallest and largest capacity; a histogram slot counts at its median value
+    private static List<BatteryCapacityDistributionResponse.Bucket> toBuckets(Histogram histogram, int buckets) {
+        if (buckets == 0 || histogram.getTotalCount() == 0) {
+            return List.of();
+        }
+        long min = histogram.getMinValue();
+        long max = histogram.getMaxValue();
+        long width = Math.max(1, Math.ceilDiv(max - min + 1, buckets));
+        long[] counts = new long[(int) Math.ceilDiv(max - min + 1, width)];
+        for (HistogramIterationValue value : histogram.recordedValues()) {
+            long capacity = Math.clamp(histogram.medianEquivalentValue(value.getValueIteratedTo()), min, max);
+            counts[(int) ((capacity - min) / width)] += value.getCountAddedInThisIterationStep();
+        }
+
+        List<BatteryCapacityDistributionResponse.Bucket> result = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            long from = min + i * width;
+            result.add(BatteryCapacityDistributionResponse.Bucket.builder()
+                    .fromWattCapacity(from)
+                    .toWattCapacity(Math.min(from + width - 1, max))
+                    .batteryCount(counts[i])
+                    .build());
+        }
+        return result;
+    }
+
     private void updateBatteryEntity(Battery battery, BatteryRequest request) {
         battery.setName(request.getName());
         battery.setPostcode(request.getPostcode());
         battery.setWattCapacity(request.getCapacity());
     }
 
+    private Battery toBattery(BatteryRequest request) {
+        return Battery.builder()
+                .name(request.getName())
+                .postcode(request.getPostcode())
+                .wattCapacity(request.getCapacity())
+                .build();
+    }
+
     private BatteryResponse toBatteryResponse(Battery battery) {
         return BatteryResponse.builder()
                 .id(battery.getId())
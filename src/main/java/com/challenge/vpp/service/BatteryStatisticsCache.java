@@ -0,0 +1,118 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.config.ReadYourWrites;
+import com.challenge.vpp.dto.BatteryStatisticsResponse;
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@Component
+public class BatteryStatisticsCache {
+
+    private static final String CACHE_NAME = "batteryStatistics";
+
+    private final Cache<Key, BatteryStatisticsResponse> cache;
+    private final boolean enabled;
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BatteryStatisticsCache(MeterRegistry meterRegistry,
+                                  @Value("${vpp.statistics-cache.enabled:true}") boolean enabled,
+                                  @Value("${vpp.statistics-cache.maximum-weight:1000000}") long maximumWeight,
+                                  @Value("${vpp.statistics-cache.expire-after-write:5m}") Duration expireAfterWrite) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                // Bounded by entries plus cached names, since one full-range name list can outweigh thousands of totals
+                .maximumWeight(maximumWeight)
+                .weigher((Key key, BatteryStatisticsResponse response) -> 1 + (response.getBatteries() != null
+                        ? response.getBatteries().size() : 0))
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("vpp.statistics.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Share of range statistics requests served from the cache")
+                .register(meterRegistry);
+        Gauge.builder("vpp.statistics.cache.miss.ratio", cache, c -> c.stats().missRate())
+                .description("Share of range statistics requests that had to be computed")
+                .register(meterRegistry);
+    }
+
+    public record Key(int from, int to, Long minCapacity, Long maxCapacity, boolean withNames,
+                      Integer namesLimit, int namesOffset) {
+
+        public Key(int from, int to, Long minCapacity, Long maxCapacity, boolean withNames) {
+            this(from, to, minCapacity, maxCapacity, withNames, null, 0);
+        }
+
+        // postcodes is sorted; a window that holds a changed postcode and overlaps the changed capacities is evicted
+        boolean covers(int[] postcodes, long minChanged, long maxChanged) {
+            int position = Arrays.binarySearch(postcodes, from);
+            int next = position >= 0 ? position : -position - 1;
+            return next < postcodes.length && postcodes[next] <= to
+                    && (minCapacity == null || maxChanged >= minCapacity)
+                    && (maxCapacity == null || minChanged <= maxCapacity);
+        }
+    }
+
+    public BatteryStatisticsResponse get(Key key, Supplier<BatteryStatisticsResponse> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        BatteryStatisticsResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long observed = evictions.get();
+        // Every caller shares the entry, so it is loaded from a database that has every write this instance made
+        BatteryStatisticsResponse response = ReadYourWrites.readAfterLastWrite(loader);
+        cache.put(key, response);
+        // A write committed while the loader ran may have evicted this key already, so drop the stale result
+        if (evictions.get() != observed) {
+            cache.invalidate(key);
+        }
+        return response;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onBatteriesChanged(BatteryChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        evictions.incrementAndGet();
+        if (event.reloadRequired()) {
+            cache.invalidateAll();
+            return;
+        }
+        // Collapsed first, so a bulk write costs a binary search per cached window rather than one check per battery
+        List<BatteryChangedEvent.Entry> changed = Stream.concat(event.added().stream(), event.removed().stream()).toList();
+        if (changed.isEmpty()) {
+            return;
+        }
+        int[] postcodes = changed.stream().mapToInt(BatteryChangedEvent.Entry::postcode).sorted().distinct().toArray();
+        LongSummaryStatistics capacities = changed.stream()
+                .mapToLong(BatteryChangedEvent.Entry::wattCapacity).summaryStatistics();
+        cache.asMap().keySet().removeIf(key -> key.covers(postcodes, capacities.getMin(), capacities.getMax()));
+    }
+
+    long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,154 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.repo.BatteryRepository;
+import com.challenge.vpp.repo.projection.BatteryPostcodeRollup;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Copies the trigger-maintained postcode rollup into an immutable snapshot on a fixed interval and swaps it in whole,
+// so range summaries read one consistent version without querying the database or waiting on writers
+@Component
+@Slf4j
+public class BatterySummarySnapshots {
+
+    private final BatteryRepository batteryRepository;
+    private final MeterRegistry meterRegistry;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService refresher;
+    // Held across a refresh so that a slower, older read never replaces a newer snapshot
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+
+    public BatterySummarySnapshots(BatteryRepository batteryRepository, MeterRegistry meterRegistry,
+                                   @Value("${vpp.summary-snapshot.refresh-interval:10s}") Duration refreshInterval) {
+        this.batteryRepository = batteryRepository;
+        this.meterRegistry = meterRegistry;
+        this.refreshInterval = refreshInterval;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "summary-snapshot-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Registered once construction is complete, so the registry never holds a partly built instance
+    @PostConstruct
+    public void registerMetrics() {
+        TimeGauge.builder("vpp.battery.summary.snapshot.age", this, TimeUnit.MILLISECONDS,
+                        snapshots -> snapshots.snapshot != null ? snapshots.snapshot.age().toMillis() : 0)
+                .description("Time since the summary snapshot was last read from the rollup")
+                .register(meterRegistry);
+    }
+
+    public record Summary(long count, long totalWattCapacity, long minWattCapacity, long maxWattCapacity,
+                          long version, Instant takenAt) {
+    }
+
+    // One entry per postcode, with running totals so that count and total of any range are two lookups
+    private record Snapshot(long version, Instant takenAt, int[] postcodes, long[] countPrefix, long[] totalPrefix,
+                            long[] minimums, long[] maximums) {
+
+        Duration age() {
+            return Duration.between(takenAt, Instant.now());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public Summary summarize(int from, int to) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            refresh();
+            current = snapshot;
+        }
+        int lo = lowerBound(current.postcodes, from);
+        int hi = to == Integer.MAX_VALUE ? current.postcodes.length : lowerBound(current.postcodes, to + 1);
+        if (lo >= hi) {
+            return new Summary(0, 0, 0, 0, current.version, current.takenAt);
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = lo; i < hi; i++) {
+            min = Math.min(min, current.minimums[i]);
+            max = Math.max(max, current.maximums[i]);
+        }
+        return new Summary(current.countPrefix[hi] - current.countPrefix[lo],
+                current.totalPrefix[hi] - current.totalPrefix[lo], min, max, current.version, current.takenAt);
+    }
+
+    // The rollup and its version are read in one statement, so the snapshot holds exactly the writes committed
+    // before it started and its version is the one every instance reads for those totals
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            Instant takenAt = Instant.now();
+            List<BatteryPostcodeRollup> rows = batteryRepository.findPostcodeRollups();
+            long version = rows.isEmpty() ? 0 : rows.get(0).getVersion();
+            Snapshot previous = snapshot;
+            if (previous != null && previous.version == version) {
+                snapshot = new Snapshot(version, takenAt, previous.postcodes, previous.countPrefix,
+                        previous.totalPrefix, previous.minimums, previous.maximums);
+                return;
+            }
+            List<BatteryPostcodeRollup> rollups = rows.size() == 1 && rows.get(0).getPostcode() == null
+                    ? List.of() : rows;
+            int size = rollups.size();
+            int[] postcodes = new int[size];
+            long[] countPrefix = new long[size + 1];
+            long[] totalPrefix = new long[size + 1];
+            long[] minimums = new long[size];
+            long[] maximums = new long[size];
+            for (int i = 0; i < size; i++) {
+                BatteryPostcodeRollup rollup = rollups.get(i);
+                postcodes[i] = rollup.getPostcode();
+                countPrefix[i + 1] = countPrefix[i] + rollup.getBatteryCount();
+                totalPrefix[i + 1] = totalPrefix[i] + rollup.getTotalWattCapacity();
+                minimums[i] = rollup.getMinWattCapacity();
+                maximums[i] = rollup.getMaxWattCapacity();
+            }
+            snapshot = new Snapshot(version, takenAt, postcodes, countPrefix, totalPrefix, minimums, maximums);
+            log.debug("Summary snapshot version {} covers {} postcodes", version, size);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    // A failed refresh keeps serving the previous snapshot, whose growing age shows in every response
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("Summary snapshot refresh failed, still serving version {}: {}",
+                    snapshot != null ? snapshot.version : 0, e.getMessage());
+        }
+    }
+
+    private static int lowerBound(int[] postcodes, int postcode) {
+        int index = Arrays.binarySearch(postcodes, postcode);
+        return index >= 0 ? index : -index - 1;
+    }
+}
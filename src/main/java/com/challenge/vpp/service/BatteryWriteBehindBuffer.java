@@ -0,0 +1,202 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.dto.BatteryRequest;
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.challenge.vpp.exception.WriteBufferFullException;
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Coalesces small registrations from many callers into one transaction per batch
+@Component
+@Slf4j
+public class BatteryWriteBehindBuffer {
+
+    private final BatteryRepository batteryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BatteryMetrics batteryMetrics;
+    private final TransactionTemplate batchTransaction;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int maxBuffered;
+    private final Duration offerTimeout;
+    private final Duration commitTimeout;
+    // Permits are batteries waiting or being flushed; a caller blocks for one when the buffer is full
+    private final Semaphore capacity;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private volatile boolean running;
+
+    public BatteryWriteBehindBuffer(BatteryRepository batteryRepository, ApplicationEventPublisher eventPublisher,
+                                    BatteryMetrics batteryMetrics, PlatformTransactionManager transactionManager,
+                                    @Value("${vpp.write-behind.enabled:false}") boolean enabled,
+                                    @Value("${vpp.write-behind.batch-size:500}") int batchSize,
+                                    @Value("${vpp.write-behind.max-delay:10ms}") Duration maxDelay,
+                                    @Value("${vpp.write-behind.max-buffered:10000}") int maxBuffered,
+                                    @Value("${vpp.write-behind.offer-timeout:5s}") Duration offerTimeout,
+                                    @Value("${vpp.write-behind.commit-timeout:30s}") Duration commitTimeout) {
+        this.batteryRepository = batteryRepository;
+        this.eventPublisher = eventPublisher;
+        this.batteryMetrics = batteryMetrics;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxBuffered = maxBuffered;
+        this.offerTimeout = offerTimeout;
+        this.commitTimeout = commitTimeout;
+        this.capacity = new Semaphore(maxBuffered);
+        this.flusher = new Thread(this::flushLoop, "write-behind-flusher");
+        this.flusher.setDaemon(true);
+        if (enabled) {
+            running = true;
+            flusher.start();
+        }
+    }
+
+    private record Pending(List<BatteryRequest> requests, CompletableFuture<Void> durable) {
+    }
+
+    // Requests larger than the whole buffer are already a batch of their own and are written directly
+    public boolean accepts(List<BatteryRequest> requests) {
+        return enabled && requests.size() <= maxBuffered;
+    }
+
+    // The future completes once the batch holding these batteries has committed, or fails with a TimeoutException
+    // after vpp.write-behind.commit-timeout; the registration may still be written after that
+    public CompletableFuture<Void> submit(List<BatteryRequest> requests) {
+        boolean acquired;
+        try {
+            acquired = running && capacity.tryAcquire(requests.size(), offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            throw new WriteBufferFullException("Battery write buffer is full, retry later");
+        }
+        Pending pending = new Pending(requests, new CompletableFuture<>());
+        queue.add(pending);
+        // A shutdown between the check and the add may already have drained the queue; whoever removes it completes it
+        if (!running && queue.remove(pending)) {
+            fail(pending, shutDown());
+        }
+        return pending.durable().copy().orTimeout(commitTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (running) {
+            running = false;
+            flusher.join();
+            // A registration that raced the shutdown is failed rather than left waiting forever
+            for (Pending pending = queue.poll(); pending != null; pending = queue.poll()) {
+                fail(pending, shutDown());
+            }
+        }
+    }
+
+    private static IllegalStateException shutDown() {
+        return new IllegalStateException("Battery write buffer is shut down");
+    }
+
+    private void fail(Pending pending, RuntimeException failure) {
+        capacity.release(pending.requests().size());
+        pending.durable().completeExceptionally(failure);
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>();
+        try {
+            while (running || !queue.isEmpty()) {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                int size = first.requests().size();
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (size < batchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    size += next.requests().size();
+                }
+                flush(batch, size);
+                capacity.release(size);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop(batch, e);
+        } catch (RuntimeException | Error e) {
+            stop(batch, e);
+        }
+    }
+
+    // Once the flusher is gone nothing would complete the futures, so new registrations are refused and every
+    // waiting one is failed; completing one that its batch already wrote has no effect
+    private void stop(List<Pending> batch, Throwable cause) {
+        running = false;
+        log.error("Write-behind flusher stopped, failing {} unwritten registrations",
+                batch.size() + queue.size(), cause);
+        IllegalStateException failure = new IllegalStateException("Battery write buffer stopped", cause);
+        batch.forEach(pending -> fail(pending, failure));
+        for (Pending pending = queue.poll(); pending != null; pending = queue.poll()) {
+            fail(pending, failure);
+        }
+    }
+
+    private void flush(List<Pending> batch, int size) {
+        try {
+            write(batch.stream().flatMap(pending -> pending.requests().stream()).toList());
+            batch.forEach(pending -> pending.durable().complete(null));
+            batteryMetrics.batchIngested("write-behind", size);
+            log.debug("Flushed {} batteries from {} registrations", size, batch.size());
+        } catch (Exception e) {
+            // One bad registration must not fail the others, so the batch is retried a registration at a time
+            log.warn("Write-behind batch of {} batteries failed, retrying registrations individually: {}",
+                    size, e.getMessage());
+            for (Pending pending : batch) {
+                try {
+                    write(pending.requests());
+                    pending.durable().complete(null);
+                } catch (Exception failure) {
+                    pending.durable().completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    private void write(List<BatteryRequest> requests) {
+        batchTransaction.executeWithoutResult(status -> {
+            List<Battery> saved = batteryRepository.saveAll(requests.stream().map(this::toBattery).toList());
+            eventPublisher.publishEvent(BatteryChangedEvent.saved(saved));
+        });
+    }
+
+    private Battery toBattery(BatteryRequest request) {
+        return Battery.builder()
+                .name(request.getName())
+                .postcode(request.getPostcode())
+                .wattCapacity(request.getCapacity())
+                .build();
+    }
+}
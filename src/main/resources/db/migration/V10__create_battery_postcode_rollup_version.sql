@@ -0,0 +1,30 @@
+-- Summary snapshots carry a version read from the database, so it survives restarts and means the same on every
+-- instance. Every write statement on battery bumps a counter in its own transaction; the version is the sum of the
+-- counters and is read in the same statement as the rollup. A later snapshot sees every transaction an earlier one
+-- saw, so equal sums mean the same committed writes and therefore the same totals
+SET LOCAL lock_timeout = '10s';
+
+-- The counter is split into shards picked by transaction id, so concurrent writers rarely wait on the same row
+CREATE TABLE battery_postcode_rollup_version (
+    shard INT PRIMARY KEY,
+    changes BIGINT NOT NULL
+);
+
+INSERT INTO battery_postcode_rollup_version (shard, changes)
+SELECT shard, 0
+FROM generate_series(0, 15) AS shard;
+
+-- Fires before the statement touches battery or the rollup, so a transaction always locks its shard before any
+-- rollup row and the counter adds no lock-order cycle. It may bump on a write that leaves the totals unchanged
+CREATE OR REPLACE FUNCTION battery_postcode_rollup_bump() RETURNS trigger AS $$
+BEGIN
+    UPDATE battery_postcode_rollup_version
+    SET changes = changes + 1
+    WHERE shard = pg_current_xact_id()::text::bigint % 16;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER battery_postcode_rollup_bump
+    BEFORE INSERT OR UPDATE OR DELETE OR TRUNCATE ON battery
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_postcode_rollup_bump();
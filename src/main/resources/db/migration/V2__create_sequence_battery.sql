@@ -0,0 +1,8 @@
+CREATE SEQUENCE IF NOT EXISTS battery_seq INCREMENT BY 50;
+
+SELECT setval('battery_seq', COALESCE((SELECT MAX(id) FROM battery), 0) + 50, false);
+
+ALTER TABLE battery ALTER COLUMN id SET DEFAULT nextval('battery_seq');
+ALTER SEQUENCE battery_seq OWNED BY battery.id;
+
+DROP SEQUENCE IF EXISTS battery_id_seq;
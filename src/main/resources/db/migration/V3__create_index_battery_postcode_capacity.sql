@@ -0,0 +1,5 @@
+CREATE INDEX IF NOT EXISTS idx_battery_postcode_watt_capacity
+    ON battery (postcode, watt_capacity);
+
+CREATE INDEX IF NOT EXISTS idx_battery_postcode_watt_capacity_name
+    ON battery (postcode, watt_capacity) INCLUDE (name);
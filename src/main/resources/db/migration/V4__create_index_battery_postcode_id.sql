@@ -0,0 +1,2 @@
+CREATE INDEX IF NOT EXISTS idx_battery_postcode_id
+    ON battery (postcode, id);
@@ -0,0 +1,100 @@
+CREATE TABLE IF NOT EXISTS battery_postcode_rollup (
+    postcode INT PRIMARY KEY,
+    battery_count BIGINT NOT NULL,
+    total_watt_capacity BIGINT NOT NULL,
+    min_watt_capacity BIGINT NOT NULL,
+    max_watt_capacity BIGINT NOT NULL
+);
+
+INSERT INTO battery_postcode_rollup (postcode, battery_count, total_watt_capacity, min_watt_capacity, max_watt_capacity)
+SELECT postcode, COUNT(*), SUM(watt_capacity), MIN(watt_capacity), MAX(watt_capacity)
+FROM battery
+GROUP BY postcode;
+
+-- Inserts only add to a postcode, so they are folded in as deltas; this also covers COPY and batched inserts
+CREATE OR REPLACE FUNCTION battery_postcode_rollup_insert() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO battery_postcode_rollup AS r (postcode, battery_count, total_watt_capacity, min_watt_capacity, max_watt_capacity)
+    SELECT postcode, COUNT(*), SUM(watt_capacity), MIN(watt_capacity), MAX(watt_capacity)
+    FROM new_batteries
+    GROUP BY postcode
+    ORDER BY postcode
+    ON CONFLICT (postcode) DO UPDATE SET
+        battery_count = r.battery_count + EXCLUDED.battery_count,
+        total_watt_capacity = r.total_watt_capacity + EXCLUDED.total_watt_capacity,
+        min_watt_capacity = LEAST(r.min_watt_capacity, EXCLUDED.min_watt_capacity),
+        max_watt_capacity = GREATEST(r.max_watt_capacity, EXCLUDED.max_watt_capacity);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Updates and deletes can take away a postcode's minimum or maximum, so the touched postcodes are recounted.
+-- The rows are locked first and the recount runs as a later statement, so it sees every write committed before it
+CREATE OR REPLACE FUNCTION battery_postcode_rollup_recount(postcodes INT[]) RETURNS void AS $$
+BEGIN
+    PERFORM 1 FROM battery_postcode_rollup WHERE postcode = ANY (postcodes) ORDER BY postcode FOR UPDATE;
+
+    DELETE FROM battery_postcode_rollup r
+    WHERE r.postcode = ANY (postcodes)
+      AND NOT EXISTS (SELECT 1 FROM battery b WHERE b.postcode = r.postcode);
+
+    INSERT INTO battery_postcode_rollup AS r (postcode, battery_count, total_watt_capacity, min_watt_capacity, max_watt_capacity)
+    SELECT postcode, COUNT(*), SUM(watt_capacity), MIN(watt_capacity), MAX(watt_capacity)
+    FROM battery
+    WHERE postcode = ANY (postcodes)
+    GROUP BY postcode
+    ORDER BY postcode
+    ON CONFLICT (postcode) DO UPDATE SET
+        battery_count = EXCLUDED.battery_count,
+        total_watt_capacity = EXCLUDED.total_watt_capacity,
+        min_watt_capacity = EXCLUDED.min_watt_capacity,
+        max_watt_capacity = EXCLUDED.max_watt_capacity;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION battery_postcode_rollup_update() RETURNS trigger AS $$
+BEGIN
+    PERFORM battery_postcode_rollup_recount(ARRAY(
+        SELECT o.postcode
+        FROM old_batteries o JOIN new_batteries n ON n.id = o.id
+        WHERE (o.postcode, o.watt_capacity) IS DISTINCT FROM (n.postcode, n.watt_capacity)
+        UNION
+        SELECT n.postcode
+        FROM old_batteries o JOIN new_batteries n ON n.id = o.id
+        WHERE (o.postcode, o.watt_capacity) IS DISTINCT FROM (n.postcode, n.watt_capacity)));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION battery_postcode_rollup_delete() RETURNS trigger AS $$
+BEGIN
+    PERFORM battery_postcode_rollup_recount(ARRAY(SELECT DISTINCT postcode FROM old_batteries));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION battery_postcode_rollup_truncate() RETURNS trigger AS $$
+BEGIN
+    TRUNCATE battery_postcode_rollup;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER battery_postcode_rollup_insert
+    AFTER INSERT ON battery
+    REFERENCING NEW TABLE AS new_batteries
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_postcode_rollup_insert();
+
+CREATE TRIGGER battery_postcode_rollup_update
+    AFTER UPDATE ON battery
+    REFERENCING OLD TABLE AS old_batteries NEW TABLE AS new_batteries
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_postcode_rollup_update();
+
+CREATE TRIGGER battery_postcode_rollup_delete
+    AFTER DELETE ON battery
+    REFERENCING OLD TABLE AS old_batteries
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_postcode_rollup_delete();
+
+CREATE TRIGGER battery_postcode_rollup_truncate
+    AFTER TRUNCATE ON battery
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_postcode_rollup_truncate();
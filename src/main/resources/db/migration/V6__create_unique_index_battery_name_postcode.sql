@@ -0,0 +1,80 @@
+-- Re-sent registrations used to insert duplicates. Which copy to keep is a decision for the operator, so the migration
+-- stops and lists them instead of deleting anything; once they are resolved, the migration runs again on startup
+DO $$
+DECLARE
+    duplicates BIGINT;
+    examples TEXT;
+BEGIN
+    SELECT COUNT(*),
+           string_agg(format('%s/%s (ids %s)', name, postcode, ids), '; ' ORDER BY name, postcode)
+               FILTER (WHERE n <= 20)
+    INTO duplicates, examples
+    FROM (
+        SELECT name, postcode, string_agg(id::text, ',' ORDER BY id) AS ids,
+               row_number() OVER (ORDER BY name, postcode) AS n
+        FROM battery
+        GROUP BY name, postcode
+        HAVING COUNT(*) > 1
+    ) d;
+
+    IF duplicates > 0 THEN
+        RAISE EXCEPTION 'battery holds % name/postcode pairs registered more than once', duplicates
+            USING DETAIL = 'First duplicates: ' || examples,
+                  HINT = 'Delete or merge the extra rows (SELECT name, postcode, array_agg(id) FROM battery '
+                      || 'GROUP BY name, postcode HAVING COUNT(*) > 1), then restart the application';
+    END IF;
+END
+$$;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_battery_name_postcode
+    ON battery (name, postcode);
+
+-- An upsert fires the update trigger before the insert trigger, so a full recount here would already include the
+-- rows the insert trigger is about to add. Count and total therefore move as deltas, and only the extremes are
+-- recomputed, which the LEAST/GREATEST of the insert trigger leaves unchanged
+CREATE OR REPLACE FUNCTION battery_postcode_rollup_update() RETURNS trigger AS $$
+DECLARE
+    postcodes INT[];
+BEGIN
+    postcodes := ARRAY(
+        SELECT o.postcode
+        FROM old_batteries o JOIN new_batteries n ON n.id = o.id
+        WHERE (o.postcode, o.watt_capacity) IS DISTINCT FROM (n.postcode, n.watt_capacity)
+        UNION
+        SELECT n.postcode
+        FROM old_batteries o JOIN new_batteries n ON n.id = o.id
+        WHERE (o.postcode, o.watt_capacity) IS DISTINCT FROM (n.postcode, n.watt_capacity));
+    PERFORM 1 FROM battery_postcode_rollup WHERE postcode = ANY (postcodes) ORDER BY postcode FOR UPDATE;
+
+    INSERT INTO battery_postcode_rollup AS r (postcode, battery_count, total_watt_capacity, min_watt_capacity, max_watt_capacity)
+    SELECT postcode, SUM(batteries), SUM(watt_capacity), 0, 0
+    FROM (
+        SELECT o.postcode, -1 AS batteries, -o.watt_capacity AS watt_capacity
+        FROM old_batteries o JOIN new_batteries n ON n.id = o.id
+        WHERE (o.postcode, o.watt_capacity) IS DISTINCT FROM (n.postcode, n.watt_capacity)
+        UNION ALL
+        SELECT n.postcode, 1, n.watt_capacity
+        FROM old_batteries o JOIN new_batteries n ON n.id = o.id
+        WHERE (o.postcode, o.watt_capacity) IS DISTINCT FROM (n.postcode, n.watt_capacity)
+    ) changed
+    GROUP BY postcode
+    ORDER BY postcode
+    ON CONFLICT (postcode) DO UPDATE SET
+        battery_count = r.battery_count + EXCLUDED.battery_count,
+        total_watt_capacity = r.total_watt_capacity + EXCLUDED.total_watt_capacity;
+
+    DELETE FROM battery_postcode_rollup WHERE postcode = ANY (postcodes) AND battery_count = 0;
+
+    UPDATE battery_postcode_rollup r
+    SET min_watt_capacity = b.min_watt_capacity,
+        max_watt_capacity = b.max_watt_capacity
+    FROM (
+        SELECT postcode, MIN(watt_capacity) AS min_watt_capacity, MAX(watt_capacity) AS max_watt_capacity
+        FROM battery
+        WHERE postcode = ANY (postcodes)
+        GROUP BY postcode
+    ) b
+    WHERE r.postcode = b.postcode;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,136 @@
+-- battery becomes range-partitioned by postcode region (the leading digit of the postcode), so postcode range
+-- queries only scan, vacuum and maintain the indexes of the regions they span. The open-ended first and last
+-- regions accept every positive postcode without a default partition, which range pruning could never skip.
+-- The switch is online and takes three migrations: V7 creates the partitioned table next to battery and mirrors
+-- every write into it, V8 backfills the existing rows in batches that each commit on their own, and V9 swaps
+-- the tables in one short transaction. battery keeps serving reads and writes until the swap
+SET LOCAL lock_timeout = '10s';
+
+-- Unique constraints on a partitioned table must contain the partition key, so the primary key is (id, postcode).
+-- ids stay unique because every insert path draws them from battery_seq: Hibernate and the bulk paths reserve blocks
+-- of 50 from it, and an update that changes the region moves the row rather than copying it
+CREATE TABLE battery_partitioned (
+    id BIGINT NOT NULL DEFAULT nextval('battery_seq'),
+    name VARCHAR(255) NOT NULL,
+    postcode INT NOT NULL,
+    watt_capacity BIGINT NOT NULL,
+    created_at timestamp with time zone NOT NULL,
+    modified_at timestamp with time zone NOT NULL,
+    CONSTRAINT battery_partitioned_pkey PRIMARY KEY (id, postcode)
+) PARTITION BY RANGE (postcode);
+
+CREATE TABLE battery_region_0 PARTITION OF battery_partitioned FOR VALUES FROM (MINVALUE) TO (1000);
+CREATE TABLE battery_region_1 PARTITION OF battery_partitioned FOR VALUES FROM (1000) TO (2000);
+CREATE TABLE battery_region_2 PARTITION OF battery_partitioned FOR VALUES FROM (2000) TO (3000);
+CREATE TABLE battery_region_3 PARTITION OF battery_partitioned FOR VALUES FROM (3000) TO (4000);
+CREATE TABLE battery_region_4 PARTITION OF battery_partitioned FOR VALUES FROM (4000) TO (5000);
+CREATE TABLE battery_region_5 PARTITION OF battery_partitioned FOR VALUES FROM (5000) TO (6000);
+CREATE TABLE battery_region_6 PARTITION OF battery_partitioned FOR VALUES FROM (6000) TO (7000);
+CREATE TABLE battery_region_7 PARTITION OF battery_partitioned FOR VALUES FROM (7000) TO (8000);
+CREATE TABLE battery_region_8 PARTITION OF battery_partitioned FOR VALUES FROM (8000) TO (9000);
+CREATE TABLE battery_region_9 PARTITION OF battery_partitioned FOR VALUES FROM (9000) TO (MAXVALUE);
+
+-- The indexes are built on the empty table and take their final names in V9, once battery's are gone
+CREATE UNIQUE INDEX battery_partitioned_name_postcode
+    ON battery_partitioned (name, postcode);
+
+CREATE INDEX battery_partitioned_postcode_watt_capacity
+    ON battery_partitioned (postcode, watt_capacity);
+
+CREATE INDEX battery_partitioned_postcode_watt_capacity_name
+    ON battery_partitioned (postcode, watt_capacity) INCLUDE (name);
+
+CREATE INDEX battery_partitioned_postcode_id
+    ON battery_partitioned (postcode, id);
+
+-- The mirror runs inside the writing transaction. A row the backfill has not reached yet is inserted by the
+-- mirror and skipped by the backfill; one it has reached is replaced, since the backfill locks its batch
+CREATE OR REPLACE FUNCTION battery_partition_mirror_insert() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO battery_partitioned (id, name, postcode, watt_capacity, created_at, modified_at)
+    SELECT id, name, postcode, watt_capacity, created_at, modified_at
+    FROM new_batteries;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION battery_partition_mirror_update() RETURNS trigger AS $$
+BEGIN
+    DELETE FROM battery_partitioned p
+    USING old_batteries o
+    WHERE p.id = o.id AND p.postcode = o.postcode;
+    INSERT INTO battery_partitioned (id, name, postcode, watt_capacity, created_at, modified_at)
+    SELECT id, name, postcode, watt_capacity, created_at, modified_at
+    FROM new_batteries;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION battery_partition_mirror_delete() RETURNS trigger AS $$
+BEGIN
+    DELETE FROM battery_partitioned p
+    USING old_batteries o
+    WHERE p.id = o.id AND p.postcode = o.postcode;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION battery_partition_mirror_truncate() RETURNS trigger AS $$
+BEGIN
+    TRUNCATE battery_partitioned;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER battery_partition_mirror_insert
+    AFTER INSERT ON battery
+    REFERENCING NEW TABLE AS new_batteries
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_partition_mirror_insert();
+
+CREATE TRIGGER battery_partition_mirror_update
+    AFTER UPDATE ON battery
+    REFERENCING OLD TABLE AS old_batteries NEW TABLE AS new_batteries
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_partition_mirror_update();
+
+CREATE TRIGGER battery_partition_mirror_delete
+    AFTER DELETE ON battery
+    REFERENCING OLD TABLE AS old_batteries
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_partition_mirror_delete();
+
+CREATE TRIGGER battery_partition_mirror_truncate
+    AFTER TRUNCATE ON battery
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_partition_mirror_truncate();
+
+-- Copies the rows that existed before the mirror, one committed batch at a time. Batches are keyset pages of
+-- batch_size rows in id order, so gaps in the ids cost nothing; rows above the starting maximum were mirrored
+-- already. FOR SHARE makes a concurrent update or delete of the batch wait for its commit, so the mirror then
+-- finds the copied row; a row the mirror already wrote is left alone. Rerunning it after a failure skips what is
+-- already there
+CREATE OR REPLACE PROCEDURE battery_partition_backfill(batch_size INT) AS $$
+DECLARE
+    last_id BIGINT := 0;
+    max_id BIGINT;
+    batch_max_id BIGINT;
+BEGIN
+    SELECT COALESCE(MAX(id), 0) INTO max_id FROM battery;
+    LOOP
+        WITH batch AS MATERIALIZED (
+            SELECT id, name, postcode, watt_capacity, created_at, modified_at
+            FROM battery
+            WHERE id > last_id AND id <= max_id
+            ORDER BY id
+            LIMIT batch_size
+            FOR SHARE
+        ), copied AS (
+            INSERT INTO battery_partitioned (id, name, postcode, watt_capacity, created_at, modified_at)
+            SELECT id, name, postcode, watt_capacity, created_at, modified_at
+            FROM batch
+            ON CONFLICT DO NOTHING
+        )
+        SELECT MAX(id) INTO batch_max_id FROM batch;
+        EXIT WHEN batch_max_id IS NULL;
+        last_id := batch_max_id;
+        COMMIT;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,6 @@
+-- Runs outside a Flyway transaction (see the .conf file next to this script), so every batch of the backfill
+-- commits and releases its row locks before the next one starts
+CALL battery_partition_backfill(10000);
+
+-- The partitions have no statistics until autovacuum reaches them
+ANALYZE battery_partitioned;
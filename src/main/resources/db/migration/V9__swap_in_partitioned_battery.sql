@@ -0,0 +1,43 @@
+-- Puts the backfilled partitioned table in place of battery. Everything here only touches the catalog, so the
+-- exclusive lock is held for milliseconds; the lock timeout fails the migration, to be retried, rather than let
+-- every query queue behind a lock that waits for a long-running transaction
+SET LOCAL lock_timeout = '10s';
+LOCK TABLE battery IN ACCESS EXCLUSIVE MODE;
+
+-- Dropping battery also drops its indexes and its rollup and mirror triggers; the sequence outlives it
+ALTER SEQUENCE battery_seq OWNED BY NONE;
+DROP TABLE battery;
+DROP PROCEDURE battery_partition_backfill(INT);
+DROP FUNCTION battery_partition_mirror_insert();
+DROP FUNCTION battery_partition_mirror_update();
+DROP FUNCTION battery_partition_mirror_delete();
+DROP FUNCTION battery_partition_mirror_truncate();
+
+ALTER TABLE battery_partitioned RENAME TO battery;
+ALTER TABLE battery RENAME CONSTRAINT battery_partitioned_pkey TO battery_pkey;
+ALTER INDEX battery_partitioned_name_postcode RENAME TO uk_battery_name_postcode;
+ALTER INDEX battery_partitioned_postcode_watt_capacity RENAME TO idx_battery_postcode_watt_capacity;
+ALTER INDEX battery_partitioned_postcode_watt_capacity_name RENAME TO idx_battery_postcode_watt_capacity_name;
+ALTER INDEX battery_partitioned_postcode_id RENAME TO idx_battery_postcode_id;
+ALTER SEQUENCE battery_seq OWNED BY battery.id;
+
+-- Statement triggers on the partitioned table see the rows of every partition in their transition tables; the
+-- rollup already holds the backfilled rows
+CREATE TRIGGER battery_postcode_rollup_insert
+    AFTER INSERT ON battery
+    REFERENCING NEW TABLE AS new_batteries
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_postcode_rollup_insert();
+
+CREATE TRIGGER battery_postcode_rollup_update
+    AFTER UPDATE ON battery
+    REFERENCING OLD TABLE AS old_batteries NEW TABLE AS new_batteries
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_postcode_rollup_update();
+
+CREATE TRIGGER battery_postcode_rollup_delete
+    AFTER DELETE ON battery
+    REFERENCING OLD TABLE AS old_batteries
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_postcode_rollup_delete();
+
+CREATE TRIGGER battery_postcode_rollup_truncate
+    AFTER TRUNCATE ON battery
+    FOR EACH STATEMENT EXECUTE FUNCTION battery_postcode_rollup_truncate();
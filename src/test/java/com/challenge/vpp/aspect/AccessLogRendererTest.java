@@ -0,0 +1,62 @@
+package com.challenge.vpp.aspect;
+
+import com.challenge.vpp.dto.BatteryRequest;
+import com.challenge.vpp.dto.BatteryRequestList;
+import com.challenge.vpp.dto.BatteryStatisticsResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogRendererTest {
+
+    @Test
+    void render_WithRequestList_RendersSizeAndFields() {
+        // Arrange
+        BatteryRequestList requests = new BatteryRequestList(List.of(
+                BatteryRequest.builder().name("Battery1").postcode(2000).capacity(100L).build()));
+
+        // Act
+        String rendered = AccessLogRenderer.render(new Object[]{requests}, 1000);
+
+        // Assert
+        assertEquals("[size=1: BatteryRequestList(batteries=[size=1: " +
+                "BatteryRequest(name=Battery1, postcode=2000, capacity=100)])]", rendered);
+    }
+
+    @Test
+    void render_WithHugeResponse_StopsAtMaxLength() {
+        // Arrange
+        List<String> names = IntStream.range(0, 1_000_000).mapToObj(i -> "Battery" + i).toList();
+        ResponseEntity<BatteryStatisticsResponse> response = ResponseEntity.ok(
+                BatteryStatisticsResponse.builder().batteries(names).batteryCount(names.size()).build());
+
+        // Act
+        String rendered = AccessLogRenderer.render(response, 100);
+
+        // Assert
+        assertEquals(100 + 3, rendered.length());
+        assertTrue(rendered.startsWith("200 BatteryStatisticsResponse(batteries=[size=1000000: Battery0, "));
+        assertTrue(rendered.endsWith("..."));
+    }
+
+    @Test
+    void lazy_RendersOnlyWhenFormatted() {
+        // Arrange
+        Object value = new Object() {
+            @Override
+            public String toString() {
+                throw new AssertionError("rendered eagerly");
+            }
+        };
+
+        // Act
+        Object lazy = AccessLogRenderer.lazy(value, 10);
+
+        // Assert
+        assertThrows(AssertionError.class, lazy::toString);
+    }
+}
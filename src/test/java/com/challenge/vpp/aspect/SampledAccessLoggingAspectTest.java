@@ -0,0 +1,91 @@
+package com.challenge.vpp.aspect;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.challenge.vpp.controller.BatteryController;
+import com.challenge.vpp.exception.BatteryDataException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SampledAccessLoggingAspectTest {
+
+    @Mock
+    private ProceedingJoinPoint joinPoint;
+
+    @Mock
+    private Signature signature;
+
+    private final Logger accessLogger = (Logger) LoggerFactory.getLogger("com.challenge.vpp.access");
+    private final ListAppender<ILoggingEvent> events = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        events.start();
+        accessLogger.addAppender(events);
+        lenient().when(joinPoint.getSignature()).thenReturn(signature);
+        lenient().when(joinPoint.getArgs()).thenReturn(new Object[]{2000, 2100});
+        lenient().when(signature.getDeclaringType()).thenReturn(BatteryController.class);
+        lenient().when(signature.getName()).thenReturn("getBatteriesInRange");
+    }
+
+    @AfterEach
+    void tearDown() {
+        accessLogger.detachAppender(events);
+    }
+
+    @Test
+    void around_WhenSampled_LogsOneStructuredLine() throws Throwable {
+        // Arrange
+        SampledAccessLoggingAspect aspect = new SampledAccessLoggingAspect(1.0, 1000);
+        when(joinPoint.proceed()).thenReturn("result");
+
+        // Act
+        Object result = aspect.around(joinPoint);
+
+        // Assert
+        assertEquals("result", result);
+        assertEquals(1, events.list.size());
+        assertTrue(events.list.getFirst().getFormattedMessage().matches(
+                "handler=BatteryController.getBatteriesInRange outcome=ok durationMs=\\d+ " +
+                        "args=\\[size=2: 2000, 2100] result=result"));
+    }
+
+    @Test
+    void around_WhenNotSampled_SkipsRendering() throws Throwable {
+        // Arrange
+        SampledAccessLoggingAspect aspect = new SampledAccessLoggingAspect(0.0, 1000);
+        when(joinPoint.proceed()).thenReturn("result");
+
+        // Act
+        aspect.around(joinPoint);
+
+        // Assert
+        assertTrue(events.list.isEmpty());
+        verify(joinPoint, never()).getArgs();
+    }
+
+    @Test
+    void around_WhenHandlerFails_AlwaysLogsAndRethrows() throws Throwable {
+        // Arrange
+        SampledAccessLoggingAspect aspect = new SampledAccessLoggingAspect(0.0, 1000);
+        when(joinPoint.proceed()).thenThrow(new BatteryDataException("Invalid range"));
+
+        // Act & Assert
+        assertThrows(BatteryDataException.class, () -> aspect.around(joinPoint));
+        assertEquals(1, events.list.size());
+        assertTrue(events.list.getFirst().getFormattedMessage().contains("outcome=error"));
+        assertTrue(events.list.getFirst().getFormattedMessage().endsWith("result=Invalid range"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.challenge.vpp.config;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadYourWritesFilterTest {
+
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter();
+
+    @Test
+    void doFilter_SuccessfulWrite_ShouldReturnReadAfterToken() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/batteries");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        long before = System.currentTimeMillis();
+
+        // Act
+        filter.doFilter(request, response, (req, res) -> res.getWriter().write("{}"));
+
+        // Assert
+        assertTrue(Long.parseLong(response.getHeader(ReadYourWrites.HEADER)) >= before);
+        assertEquals("{}", response.getContentAsString());
+    }
+
+    @Test
+    void doFilter_FailedWriteOrRead_ShouldNotReturnToken() throws Exception {
+        // Arrange
+        MockHttpServletResponse failed = new MockHttpServletResponse();
+        MockHttpServletResponse read = new MockHttpServletResponse();
+
+        // Act
+        filter.doFilter(new MockHttpServletRequest("POST", "/batteries"), failed,
+                (req, res) -> ((HttpServletResponse) res).setStatus(409));
+        filter.doFilter(new MockHttpServletRequest("GET", "/batteries"), read, (req, res) -> {
+        });
+
+        // Assert
+        assertNull(failed.getHeader(ReadYourWrites.HEADER));
+        assertNull(read.getHeader(ReadYourWrites.HEADER));
+    }
+
+    @Test
+    void doFilter_ReadWithToken_ShouldRequireItForThatRequestOnly() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/batteries");
+        request.addHeader(ReadYourWrites.HEADER, "1700000000000");
+        List<Long> seen = new ArrayList<>();
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> seen.add(ReadYourWrites.readAfter()));
+
+        // Assert
+        assertEquals(List.of(1700000000000L), seen);
+        assertNull(ReadYourWrites.readAfter());
+    }
+}
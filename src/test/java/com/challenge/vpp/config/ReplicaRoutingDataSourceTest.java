@@ -0,0 +1,168 @@
+package com.challenge.vpp.config;
+
+import com.challenge.vpp.event.BatteryChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Testcontainers
+class ReplicaRoutingDataSourceTest {
+
+    @Container
+    static PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:17-alpine")
+            .withDatabaseName("primary_db")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Container
+    static PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:17-alpine")
+            .withDatabaseName("replica_db")
+            .withUsername("test")
+            .withPassword("test");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @AfterEach
+    void tearDown() {
+        routingDataSource.close();
+        ReadYourWrites.readAfter(null);
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldUseReplicaAndOtherTransactionsThePrimary() {
+        // Arrange
+        routingDataSource = routing(List.of(dataSource(replica)));
+        routingDataSource.checkReplicas();
+        DataSource dataSource = lazyProxy(routingDataSource);
+
+        // Act
+        String readOnly = currentDatabase(dataSource, true);
+        String readWrite = currentDatabase(dataSource, false);
+
+        // Assert
+        assertEquals("replica_db", readOnly);
+        assertEquals("primary_db", readWrite);
+        assertEquals(1, meterRegistry.get("vpp.datasource.read.connections").tag("target", "replica").counter().count());
+    }
+
+    @Test
+    void readOnlyTransaction_WithReadAfterNewerThanLastCheck_ShouldUsePrimaryForThatCallerOnly()
+            throws InterruptedException {
+        // Arrange
+        routingDataSource = routing(List.of(dataSource(replica)));
+        routingDataSource.checkReplicas();
+        DataSource dataSource = lazyProxy(routingDataSource);
+        Thread.sleep(10);
+        long writtenAt = System.currentTimeMillis();
+
+        // Act
+        ReadYourWrites.readAfter(writtenAt);
+        String writer = currentDatabase(dataSource, true);
+        ReadYourWrites.readAfter(null);
+        String otherCaller = currentDatabase(dataSource, true);
+        routingDataSource.checkReplicas();
+        ReadYourWrites.readAfter(writtenAt);
+        String writerAfterCheck = currentDatabase(dataSource, true);
+
+        // Assert
+        assertEquals("primary_db", writer);
+        assertEquals("replica_db", otherCaller);
+        assertEquals("replica_db", writerAfterCheck);
+    }
+
+    @Test
+    void readAfterLastWrite_AfterWrite_ShouldUsePrimaryUntilReplicaIsChecked() throws InterruptedException {
+        // Arrange
+        routingDataSource = routing(List.of(dataSource(replica)));
+        routingDataSource.checkReplicas();
+        DataSource dataSource = lazyProxy(routingDataSource);
+        Thread.sleep(10);
+
+        // Act
+        routingDataSource.onBatteriesChanged(BatteryChangedEvent.reloaded());
+        String cacheLoad = ReadYourWrites.readAfterLastWrite(() -> currentDatabase(dataSource, true));
+        String callerRead = currentDatabase(dataSource, true);
+        Thread.sleep(10);
+        routingDataSource.checkReplicas();
+        String cacheLoadAfterCheck = ReadYourWrites.readAfterLastWrite(() -> currentDatabase(dataSource, true));
+
+        // Assert
+        assertEquals("primary_db", cacheLoad);
+        assertEquals("replica_db", callerRead);
+        assertEquals("replica_db", cacheLoadAfterCheck);
+        assertNull(ReadYourWrites.readAfter());
+    }
+
+    @Test
+    void readOnlyTransaction_WhenReplicaUnreachable_ShouldFallBackToPrimary() {
+        // Arrange
+        routingDataSource = routing(List.of(new DriverManagerDataSource("jdbc:postgresql://localhost:1/replica_db",
+                "test", "test"), dataSource(replica)));
+        routingDataSource.checkReplicas();
+        DataSource dataSource = lazyProxy(routingDataSource);
+
+        // Act
+        String first = currentDatabase(dataSource, true);
+        String second = currentDatabase(dataSource, true);
+
+        // Assert
+        assertEquals("replica_db", first);
+        assertEquals("replica_db", second);
+        assertEquals(0, meterRegistry.get("vpp.datasource.replica.healthy").tag("replica", "replica-1").gauge().value());
+        assertEquals(1, meterRegistry.get("vpp.datasource.replica.healthy").tag("replica", "replica-2").gauge().value());
+    }
+
+    @Test
+    void readOnlyTransaction_WhenNoReplicaIsHealthy_ShouldUsePrimary() {
+        // Arrange
+        routingDataSource = routing(List.of(new DriverManagerDataSource("jdbc:postgresql://localhost:1/replica_db",
+                "test", "test")));
+        routingDataSource.checkReplicas();
+        DataSource dataSource = lazyProxy(routingDataSource);
+
+        // Act
+        String readOnly = currentDatabase(dataSource, true);
+
+        // Assert
+        assertEquals("primary_db", readOnly);
+        assertEquals(1, meterRegistry.get("vpp.datasource.read.connections").tag("target", "primary").counter().count());
+    }
+
+    private ReplicaRoutingDataSource routing(List<DataSource> replicas) {
+        return new ReplicaRoutingDataSource(dataSource(primary), replicas, Duration.ofSeconds(5),
+                Duration.ofHours(1), meterRegistry);
+    }
+
+    private static DataSource lazyProxy(ReplicaRoutingDataSource routingDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(dataSource(primary));
+        dataSource.setReadOnlyDataSource(routingDataSource);
+        return dataSource;
+    }
+
+    private static String currentDatabase(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("SELECT current_database()", String.class));
+    }
+
+    private static DataSource dataSource(PostgreSQLContainer<?> container) {
+        return new DriverManagerDataSource(container.getJdbcUrl(), container.getUsername(), container.getPassword());
+    }
+}
@@ -1,12 +1,25 @@
 package com.challenge.vpp.controller;
 
+import com.challenge.vpp.constant.BatteryIngestJobStatus;
+import com.challenge.vpp.constant.BatteryLoadFormat;
+import com.challenge.vpp.constant.BatterySeekOrder;
+import com.challenge.vpp.dto.BatteryCapacityDistributionResponse;
+import com.challenge.vpp.dto.BatteryCursorPage;
+import com.challenge.vpp.dto.BatteryIngestJobResponse;
+import com.challenge.vpp.dto.BatteryIngestResponse;
 import com.challenge.vpp.dto.BatteryRequest;
 import com.challenge.vpp.dto.BatteryRequestList;
 import com.challenge.vpp.dto.BatteryResponse;
 import com.challenge.vpp.dto.BatteryStatisticsResponse;
+import com.challenge.vpp.dto.BatterySummaryResponse;
+import com.challenge.vpp.dto.BatteryUpsertResponse;
 import com.challenge.vpp.exception.BatteryDataException;
 import com.challenge.vpp.exception.InvalidCapacityRangeException;
+import com.challenge.vpp.exception.IngestJobRejectedException;
 import com.challenge.vpp.exception.InvalidPostcodeRangeException;
+import com.challenge.vpp.service.BatteryExportService;
+import com.challenge.vpp.service.BatteryIngestJobService;
+import com.challenge.vpp.service.BatteryIngestService;
 import com.challenge.vpp.service.BatteryService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,17 +29,31 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -42,6 +69,15 @@ class BatteryControllerTest {
     @MockitoBean
     private BatteryService batteryService;
 
+    @MockitoBean
+    private BatteryIngestService batteryIngestService;
+
+    @MockitoBean
+    private BatteryExportService batteryExportService;
+
+    @MockitoBean
+    private BatteryIngestJobService batteryIngestJobService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -106,6 +142,79 @@ class BatteryControllerTest {
                 .andExpect(jsonPath("$.message").value("Error saving batteries"));
     }
 
+    @Test
+    void addBatteriesInBulk_WithValidRequest_ShouldReturnOk() throws Exception {
+        BatteryRequestList requestList = new BatteryRequestList();
+        requestList.setBatteries(List.of(batteryRequest));
+
+        mockMvc.perform(post("/api/v1/batteries/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestList)))
+                .andExpect(status().isOk());
+
+        verify(batteryService).bulkSave(requestList.getBatteries());
+        verify(batteryService, never()).saveAll(any());
+    }
+
+    @Test
+    void upsertBatteries_WithValidRequest_ShouldReturnCounts() throws Exception {
+        BatteryRequestList requestList = new BatteryRequestList();
+        requestList.setBatteries(List.of(batteryRequest));
+        when(batteryService.upsertAll(requestList.getBatteries()))
+                .thenReturn(BatteryUpsertResponse.builder().inserted(0).updated(1).unchanged(0).build());
+
+        mockMvc.perform(put("/api/v1/batteries")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestList)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted").value(0))
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.unchanged").value(0));
+
+        verify(batteryService, never()).saveAll(any());
+    }
+
+    @Test
+    void loadBatteries_WithCsvBody_ShouldReturnLoadedAndRejectedCounts() throws Exception {
+        when(batteryIngestService.load(any(), eq(BatteryLoadFormat.CSV)))
+                .thenReturn(BatteryIngestResponse.builder().rowsLoaded(2).rowsRejected(1).build());
+
+        mockMvc.perform(post("/api/v1/batteries/load")
+                        .contentType(BatteryLoadFormat.CSV_VALUE)
+                        .content("name,postcode,capacity\nBattery1,2000,100\nBattery2,2001,200\nbroken\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsLoaded").value(2))
+                .andExpect(jsonPath("$.rowsRejected").value(1));
+    }
+
+    @Test
+    void loadBatteries_WithNdjsonBody_ShouldUseNdjsonFormat() throws Exception {
+        when(batteryIngestService.load(any(), eq(BatteryLoadFormat.NDJSON)))
+                .thenReturn(BatteryIngestResponse.builder().rowsLoaded(1).build());
+
+        mockMvc.perform(post("/api/v1/batteries/load")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"name\":\"Battery1\",\"postcode\":2000,\"capacity\":100}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsLoaded").value(1));
+    }
+
+    @Test
+    void streamBatteries_WithValidRequest_ShouldReturnLoadedCount() throws Exception {
+        BatteryRequestList requestList = new BatteryRequestList();
+        requestList.setBatteries(List.of(batteryRequest));
+        when(batteryIngestService.stream(any()))
+                .thenReturn(BatteryIngestResponse.builder().rowsLoaded(1).build());
+
+        mockMvc.perform(post("/api/v1/batteries/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requestList)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsLoaded").value(1));
+
+        verify(batteryService, never()).saveAll(any());
+    }
+
     @ParameterizedTest
     @MethodSource("provideInvalidRequests")
     void addBatteries_WithInvalidRequests_ShouldReturnBadRequest(BatteryRequestList invalidRequests) throws Exception {
@@ -134,7 +243,7 @@ class BatteryControllerTest {
 
     @Test
     void getBatteriesInRange_WithValidParameters_ShouldReturnSuccess() throws Exception {
-        when(batteryService.getBatteriesInRange(anyInt(), anyInt(), anyLong(), anyLong()))
+        when(batteryService.getBatteriesInRange(anyInt(), anyInt(), anyLong(), anyLong(), any(), anyInt()))
                 .thenReturn(statisticsResponse);
 
         performGetRequest(2000, 2100, 50L, 200L)
@@ -148,7 +257,7 @@ class BatteryControllerTest {
 
     @Test
     void getBatteriesInRange_WithoutOptionalParameters_ShouldReturnSuccess() throws Exception {
-        when(batteryService.getBatteriesInRange(anyInt(), anyInt(), any(), any()))
+        when(batteryService.getBatteriesInRange(anyInt(), anyInt(), any(), any(), any(), anyInt()))
                 .thenReturn(statisticsResponse);
 
         performGetRequest(2000, 2100, null, null)
@@ -156,9 +265,164 @@ class BatteryControllerTest {
                 .andExpect(jsonPath("$.batteries", hasSize(2)));
     }
 
+    @Test
+    void getBatteriesInRange_WithStatisticsOnly_ShouldOmitBatteryNames() throws Exception {
+        when(batteryService.getStatisticsInRange(anyInt(), anyInt(), any(), any()))
+                .thenReturn(BatteryStatisticsResponse.builder()
+                        .totalWattCapacity(300L)
+                        .averageWattCapacity(150.0)
+                        .build());
+
+        mockMvc.perform(get("/api/v1/batteries")
+                        .param("from", "2000")
+                        .param("to", "2100")
+                        .param("statisticsOnly", "true")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.batteries").doesNotExist())
+                .andExpect(jsonPath("$.totalWattCapacity").value(300))
+                .andExpect(jsonPath("$.averageWattCapacity").value(150.0));
+
+        verify(batteryService, never()).getBatteriesInRange(anyInt(), anyInt(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getSnapshotSummary_ShouldReturnTotalsWithSnapshotVersion() throws Exception {
+        when(batteryService.getSnapshotSummary(2000, 2100))
+                .thenReturn(BatterySummaryResponse.builder()
+                        .batteryCount(2)
+                        .totalWattCapacity(300L)
+                        .averageWattCapacity(150.0)
+                        .snapshotVersion(4)
+                        .snapshotTakenAt(Instant.parse("2025-05-01T10:00:00Z"))
+                        .snapshotAgeMillis(1200)
+                        .build());
+
+        mockMvc.perform(get("/api/v1/batteries/summary")
+                        .param("from", "2000")
+                        .param("to", "2100")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalWattCapacity").value(300))
+                .andExpect(jsonPath("$.snapshotVersion").value(4))
+                .andExpect(jsonPath("$.snapshotAgeMillis").value(1200));
+    }
+
+    @Test
+    void submitIngestJob_ShouldReturnAcceptedWithJobLocation() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        when(batteryIngestJobService.submit(anyList()))
+                .thenReturn(BatteryIngestJobResponse.builder()
+                        .jobId(jobId)
+                        .status(BatteryIngestJobStatus.QUEUED)
+                        .rowsTotal(1)
+                        .build());
+
+        mockMvc.perform(post("/api/v1/batteries/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatteryRequestList(List.of(batteryRequest)))))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, containsString("/api/v1/batteries/jobs/" + jobId)))
+                .andExpect(jsonPath("$.status").value("QUEUED"))
+                .andExpect(jsonPath("$.rowsTotal").value(1));
+    }
+
+    @Test
+    void submitIngestJob_WhenQueueIsFull_ShouldReturnServiceUnavailable() throws Exception {
+        when(batteryIngestJobService.submit(anyList()))
+                .thenThrow(new IngestJobRejectedException("Too many ingest jobs in progress, retry later"));
+
+        mockMvc.perform(post("/api/v1/batteries/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatteryRequestList(List.of(batteryRequest)))))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void getIngestJob_ShouldReturnProgress() throws Exception {
+        UUID jobId = UUID.randomUUID();
+        when(batteryIngestJobService.getJob(jobId))
+                .thenReturn(BatteryIngestJobResponse.builder()
+                        .jobId(jobId)
+                        .status(BatteryIngestJobStatus.RUNNING)
+                        .rowsTotal(5000)
+                        .rowsDone(2000)
+                        .rowsFailed(3)
+                        .rowsPerSecond(1250.5)
+                        .build());
+
+        mockMvc.perform(get("/api/v1/batteries/jobs/{jobId}", jobId)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsDone").value(2000))
+                .andExpect(jsonPath("$.rowsFailed").value(3))
+                .andExpect(jsonPath("$.rowsPerSecond").value(1250.5));
+    }
+
+    @Test
+    void getCapacityDistribution_WithDefaults_ShouldRequestStandardPercentiles() throws Exception {
+        when(batteryService.getCapacityDistribution(2000, 2100, List.of(50.0, 90.0, 95.0, 99.0), 10))
+                .thenReturn(BatteryCapacityDistributionResponse.builder()
+                        .batteryCount(2)
+                        .minWattCapacity(100L)
+                        .maxWattCapacity(200L)
+                        .averageWattCapacity(150.0)
+                        .percentiles(Map.of("p50", 100L))
+                        .buckets(List.of(BatteryCapacityDistributionResponse.Bucket.builder()
+                                .fromWattCapacity(100L).toWattCapacity(200L).batteryCount(2).build()))
+                        .build());
+
+        mockMvc.perform(get("/api/v1/batteries/analytics")
+                        .param("from", "2000")
+                        .param("to", "2100")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.batteryCount").value(2))
+                .andExpect(jsonPath("$.percentiles.p50").value(100))
+                .andExpect(jsonPath("$.buckets[0].batteryCount").value(2));
+    }
+
+    @Test
+    void getCapacityDistribution_WithPercentilesAndBuckets_ShouldPassThemToService() throws Exception {
+        when(batteryService.getCapacityDistribution(anyInt(), anyInt(), anyList(), anyInt()))
+                .thenReturn(BatteryCapacityDistributionResponse.builder().build());
+
+        mockMvc.perform(get("/api/v1/batteries/analytics")
+                        .param("from", "2000")
+                        .param("to", "2100")
+                        .param("percentiles", "25,99.9")
+                        .param("buckets", "0")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(batteryService).getCapacityDistribution(2000, 2100, List.of(25.0, 99.9), 0);
+    }
+
+    @Test
+    void getBatteriesInRange_WithLimitAndOffset_ShouldPassNamesWindowToService() throws Exception {
+        when(batteryService.getBatteriesInRange(2000, 2100, null, null, 1, 1))
+                .thenReturn(BatteryStatisticsResponse.builder()
+                        .batteries(List.of("Battery2"))
+                        .batteryCount(2)
+                        .totalWattCapacity(300L)
+                        .averageWattCapacity(150.0)
+                        .build());
+
+        mockMvc.perform(get("/api/v1/batteries")
+                        .param("from", "2000")
+                        .param("to", "2100")
+                        .param("limit", "1")
+                        .param("offset", "1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.batteries", hasSize(1)))
+                .andExpect(jsonPath("$.batteries[0]").value("Battery2"))
+                .andExpect(jsonPath("$.batteryCount").value(2));
+    }
+
     @Test
     void getBatteriesInRange_WhenServiceThrowsInvalidPostcodeRange_ShouldReturnBadRequest() throws Exception {
-        when(batteryService.getBatteriesInRange(anyInt(), anyInt(), any(), any()))
+        when(batteryService.getBatteriesInRange(anyInt(), anyInt(), any(), any(), any(), anyInt()))
                 .thenThrow(new InvalidPostcodeRangeException("Invalid postcode range"));
 
         performGetRequest(2100, 2000, null, null)
@@ -168,7 +432,7 @@ class BatteryControllerTest {
 
     @Test
     void getBatteriesInRange_WhenServiceThrowsInvalidCapacityRange_ShouldReturnBadRequest() throws Exception {
-        when(batteryService.getBatteriesInRange(anyInt(), anyInt(), anyLong(), anyLong()))
+        when(batteryService.getBatteriesInRange(anyInt(), anyInt(), anyLong(), anyLong(), any(), anyInt()))
                 .thenThrow(new InvalidCapacityRangeException("Invalid capacity range"));
 
         performGetRequest(2000, 2100, 200L, 100L)
@@ -192,6 +456,14 @@ class BatteryControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    private void stubExport(String content) throws Exception {
+        when(batteryExportService.export(any(OutputStream.class), any())).thenAnswer(invocation -> {
+            OutputStream output = invocation.getArgument(0);
+            output.write(content.getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+    }
+
     private ResultActions performPostRequest(BatteryRequestList request) throws Exception {
         return mockMvc.perform(post("/api/v1/batteries")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -276,6 +548,73 @@ class BatteryControllerTest {
                 .andExpect(jsonPath("$.content[0].name").value("Battery1"));
     }
 
+    @Test
+    void getAllBatteries_WithCursor_ShouldReturnKeysetPage() throws Exception {
+        BatteryResponse battery = BatteryResponse.builder()
+                .id(1L)
+                .name("Battery1")
+                .postcode(2000)
+                .wattCapacity(150L)
+                .build();
+        BatteryCursorPage page = BatteryCursorPage.builder()
+                .content(List.of(battery))
+                .size(1)
+                .nextCursor("next")
+                .build();
+        when(batteryService.getBatteriesAfter("", BatterySeekOrder.POSTCODE, 1)).thenReturn(page);
+
+        mockMvc.perform(get("/api/v1/batteries/all")
+                        .param("cursor", "")
+                        .param("orderBy", "POSTCODE")
+                        .param("size", "1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].name").value("Battery1"))
+                .andExpect(jsonPath("$.nextCursor").value("next"))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+        verify(batteryService, never()).getAllBatteries(any());
+    }
+
+    @Test
+    void exportBatteries_AsCsv_ShouldStreamServiceOutput() throws Exception {
+        stubExport("id,name,postcode,capacity\n1,\"Battery1\",2000,150\n");
+
+        MvcResult result = mockMvc.perform(get("/api/v1/batteries/export")
+                        .param("format", "CSV")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BatteryLoadFormat.CSV_VALUE))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("batteries.csv")))
+                .andExpect(content().string("id,name,postcode,capacity\n1,\"Battery1\",2000,150\n"));
+        verify(batteryExportService).export(any(OutputStream.class), eq(BatteryLoadFormat.CSV));
+    }
+
+    @Test
+    void exportBatteries_WithGzipAccepted_ShouldCompressNdjson() throws Exception {
+        String ndjson = "{\"id\":1,\"name\":\"Battery1\",\"postcode\":2000,\"wattCapacity\":150}\n";
+        stubExport(ndjson);
+
+        MvcResult result = mockMvc.perform(get("/api/v1/batteries/export")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("filename=\"batteries.ndjson\"")))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals(ndjson, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
     @Test
     void getBatteryById_WhenBatteryNotFound_ShouldReturnNotFound() throws Exception {
         when(batteryService.getBatteryById(1L)).thenThrow(new BatteryDataException("Battery not found"));
@@ -308,6 +647,33 @@ class BatteryControllerTest {
                 .andExpect(jsonPath("$.message").value("Update failed"));
     }
 
+    @Test
+    void updateBattery_WhenNaturalKeyIsTaken_ShouldReturnConflict() throws Exception {
+        when(batteryService.updateBattery(eq(1L), any(BatteryRequest.class)))
+                .thenThrow(integrityViolation("battery_region_2_name_postcode_idx"));
+
+        mockMvc.perform(put("/api/v1/batteries/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batteryRequest)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("A battery with the same name and postcode already exists"));
+    }
+
+    @Test
+    void updateBattery_WhenOtherConstraintIsViolated_ShouldReturnGenericConflict() throws Exception {
+        when(batteryService.updateBattery(eq(1L), any(BatteryRequest.class)))
+                .thenThrow(integrityViolation("battery_postcode_check"))
+                .thenThrow(new DataIntegrityViolationException("value too long for type character varying(255)"));
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(put("/api/v1/batteries/1")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(batteryRequest)))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.message").value("The request conflicts with existing battery data"));
+        }
+    }
+
     @Test
     void deleteBattery_WhenBatteryNotFound_ShouldReturnBadRequest() throws Exception {
         doThrow(new BatteryDataException("Battery not found")).when(batteryService).deleteBattery(1L);
@@ -329,8 +695,9 @@ class BatteryControllerTest {
                 .andExpect(jsonPath("$.message").value("Fetch failed"));
     }
 
-
-
-
-
-}
\ No newline at end of file
+    private static DataIntegrityViolationException integrityViolation(String constraint) {
+        ServerErrorMessage serverError = new ServerErrorMessage(
+                "SERROR\u0000C23505\u0000Mduplicate key value violates unique constraint\u0000n" + constraint + "\u0000");
+        return new DataIntegrityViolationException("could not execute statement", new PSQLException(serverError));
+    }
+}
@@ -0,0 +1,340 @@
+package com.challenge.vpp.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("load")
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+class BatteryLoadTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17-alpine")
+            .withDatabaseName("test_db")
+            .withUsername("test")
+            .withPassword("test");
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${server.servlet.context-path:}")
+    private String contextPath;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${vpp.load.batteries:2000000}")
+    private int batteries;
+
+    @Value("${vpp.load.concurrency:64}")
+    private int concurrency;
+
+    @Value("${vpp.load.warmup:PT10S}")
+    private Duration warmup;
+
+    @Value("${vpp.load.duration:PT60S}")
+    private Duration duration;
+
+    @Value("${vpp.load.report:target/load-test/results.json}")
+    private Path report;
+
+    @Value("${vpp.load.max-error-rate:0.01}")
+    private double maxErrorRate;
+
+    // Restricts the mix to these endpoints at their relative weights; empty drives all of them
+    @Value("${vpp.load.endpoints:}")
+    private List<Endpoint> endpoints;
+
+    @Value("${vpp.load.ingest-rows:200000}")
+    private int ingestRows;
+
+    @Value("${vpp.load.ingest-batch:10000}")
+    private int ingestBatch;
+
+    @Value("${vpp.load.min-ingest-rate:10000}")
+    private double minIngestRate;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+        registry.add("spring.jpa.show-sql", () -> "false");
+    }
+
+    @RequiredArgsConstructor
+    private enum Endpoint {
+        RANGE(45),
+        RANGE_STATISTICS_ONLY(20),
+        BY_ID(15),
+        CURSOR_PAGE(10),
+        ADD(5),
+        UPDATE(5);
+
+        private final int weight;
+    }
+
+    @Test
+    void mixedTraffic() throws Exception {
+        seed();
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM battery ORDER BY random() LIMIT 10000", Long.class);
+        long[] sampleIds = ids.stream().mapToLong(Long::longValue).toArray();
+
+        Map<Endpoint, Histogram> latencies = new EnumMap<>(Endpoint.class);
+        Map<Endpoint, AtomicLong> errors = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            latencies.put(endpoint, new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3));
+            errors.put(endpoint, new AtomicLong());
+        }
+
+        List<Endpoint> mix = endpoints.isEmpty() ? List.of(Endpoint.values()) : endpoints;
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        String baseUrl = "http://localhost:" + port + contextPath + "/api/v1/batteries";
+
+        log.info("Warming up for {} with {} concurrent clients on {} threads", warmup, concurrency,
+                virtualThreads ? "virtual" : "platform");
+        drive(client, baseUrl, sampleIds, mix, warmup, null, null);
+        log.info("Measuring for {}", duration);
+        long start = System.nanoTime();
+        drive(client, baseUrl, sampleIds, mix, duration, latencies, errors);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Object> results = writeReport(mix, latencies, errors, elapsedSeconds);
+        long requests = latencies.values().stream().mapToLong(Histogram::getTotalCount).sum();
+        long failed = errors.values().stream().mapToLong(AtomicLong::get).sum();
+        log.info("Load test results written to {}: {}", report.toAbsolutePath(), results.get("endpoints"));
+        assertTrue(requests > 0, "No successful requests were recorded");
+        assertTrue(failed <= maxErrorRate * (requests + failed),
+                "Error rate too high: " + failed + " of " + (requests + failed) + " requests failed");
+    }
+
+    // Posts ingest-rows batteries to /bulk in requests of ingest-batch and fails below min-ingest-rate rows per second
+    @Test
+    void bulkIngest() throws Exception {
+        jdbcTemplate.execute("TRUNCATE battery");
+        HttpClient client = HttpClient.newHttpClient();
+        String baseUrl = "http://localhost:" + port + contextPath + "/api/v1/batteries/bulk";
+
+        long start = System.nanoTime();
+        for (int offset = 0; offset < ingestRows; offset += ingestBatch) {
+            StringBuilder body = new StringBuilder("{\"batteries\":[");
+            for (int i = offset; i < Math.min(ingestRows, offset + ingestBatch); i++) {
+                body.append(i > offset ? "," : "").append("{\"name\":\"Bulk").append(i)
+                        .append("\",\"postcode\":").append(1000 + i % 9000)
+                        .append(",\"capacity\":").append(100 + i % 100000).append('}');
+            }
+            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.append("]}").toString()))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            assertTrue(response.statusCode() < 300, "Bulk request failed with " + response.statusCode());
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        double rate = ingestRows / elapsedSeconds;
+        log.info("Bulk ingest of {} batteries in requests of {} took {} s: {} rows/s",
+                ingestRows, ingestBatch, round(elapsedSeconds), round(rate));
+        assertEquals(ingestRows, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM battery", Integer.class));
+        assertTrue(rate >= minIngestRate, "Bulk ingest reached " + round(rate) + " rows/s, below " + minIngestRate);
+    }
+
+    private void seed() {
+        long start = System.nanoTime();
+        jdbcTemplate.execute("TRUNCATE battery");
+        jdbcTemplate.update("INSERT INTO battery (name, postcode, watt_capacity, created_at, modified_at) " +
+                "SELECT 'Battery' || i, 1000 + (random() * 8999)::int, 100 + (random() * 100000)::bigint, now(), now() " +
+                "FROM generate_series(1, ?) i", batteries);
+        jdbcTemplate.execute("VACUUM ANALYZE battery");
+        log.info("Seeded {} batteries in {} s", batteries, (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    private void drive(HttpClient client, String baseUrl, long[] ids, List<Endpoint> mix, Duration length,
+                       Map<Endpoint, Histogram> latencies, Map<Endpoint, AtomicLong> errors) throws InterruptedException {
+        long deadline = System.nanoTime() + length.toNanos();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                clients.submit(() -> {
+                    // Each client walks its own keyset scan from a random postcode, so pages past the first are measured
+                    String cursor = randomCursor();
+                    while (System.nanoTime() < deadline) {
+                        Endpoint endpoint = pick(mix);
+                        HttpRequest request = request(endpoint, baseUrl, ids, cursor);
+                        long sent = System.nanoTime();
+                        long elapsed;
+                        boolean ok;
+                        try {
+                            if (endpoint == Endpoint.CURSOR_PAGE) {
+                                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                                elapsed = System.nanoTime() - sent;
+                                ok = response.statusCode() < 300;
+                                cursor = ok ? nextCursor(response.body()) : randomCursor();
+                            } else {
+                                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                                elapsed = System.nanoTime() - sent;
+                                ok = response.statusCode() < 300;
+                            }
+                        } catch (Exception e) {
+                            elapsed = System.nanoTime() - sent;
+                            ok = false;
+                        }
+                        if (latencies != null) {
+                            if (ok) {
+                                latencies.get(endpoint).recordValue(
+                                        Math.min(TimeUnit.NANOSECONDS.toMicros(elapsed), TimeUnit.MINUTES.toMicros(1)));
+                            } else {
+                                errors.get(endpoint).incrementAndGet();
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            clients.shutdown();
+            clients.awaitTermination(length.toSeconds() + 120, TimeUnit.SECONDS);
+        }
+    }
+
+    private static Endpoint pick(List<Endpoint> mix) {
+        int roll = ThreadLocalRandom.current().nextInt(mix.stream().mapToInt(endpoint -> endpoint.weight).sum());
+        for (Endpoint endpoint : mix) {
+            roll -= endpoint.weight;
+            if (roll < 0) {
+                return endpoint;
+            }
+        }
+        return mix.get(0);
+    }
+
+    // The last page has no next cursor; the client then starts over at another random postcode
+    private String nextCursor(String page) throws IOException {
+        JsonNode next = objectMapper.readTree(page).path("nextCursor");
+        return next.isTextual() ? next.asText() : randomCursor();
+    }
+
+    // Same encoding as BatteryCursor: base64url of order:postcode:id, here positioned before the postcode's first id
+    private static String randomCursor() {
+        String value = "POSTCODE:" + (1000 + ThreadLocalRandom.current().nextInt(9000)) + ":0";
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static HttpRequest request(Endpoint endpoint, String baseUrl, long[] ids, String cursor) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = 1000 + random.nextInt(8800);
+        int to = from + 10 + random.nextInt(190);
+        long id = ids[random.nextInt(ids.length)];
+        String battery = "{\"name\":\"Load" + random.nextInt(1_000_000) + "\",\"postcode\":" + from +
+                ",\"capacity\":" + (100 + random.nextInt(100_000)) + "}";
+
+        HttpRequest.Builder builder = switch (endpoint) {
+            case RANGE -> HttpRequest.newBuilder(URI.create(baseUrl + "?from=" + from + "&to=" + to));
+            case RANGE_STATISTICS_ONLY ->
+                    HttpRequest.newBuilder(URI.create(baseUrl + "?from=" + from + "&to=" + to + "&statisticsOnly=true"));
+            case BY_ID -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + id));
+            case CURSOR_PAGE -> HttpRequest.newBuilder(
+                    URI.create(baseUrl + "/all?cursor=" + cursor + "&orderBy=POSTCODE&size=100"));
+            case ADD -> HttpRequest.newBuilder(URI.create(baseUrl))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"batteries\":[" + battery + "]}"));
+            case UPDATE -> HttpRequest.newBuilder(URI.create(baseUrl + "/" + id))
+                    .PUT(HttpRequest.BodyPublishers.ofString(battery));
+        };
+        return builder.header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    private Map<String, Object> writeReport(List<Endpoint> mix, Map<Endpoint, Histogram> latencies,
+                                            Map<Endpoint, AtomicLong> errors, double elapsedSeconds) throws Exception {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        Histogram total = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+        long totalErrors = 0;
+        for (Endpoint endpoint : mix) {
+            Histogram histogram = latencies.get(endpoint);
+            total.add(histogram);
+            totalErrors += errors.get(endpoint).get();
+            endpoints.put(endpoint.name(), summarize(histogram, errors.get(endpoint).get(), elapsedSeconds));
+        }
+        endpoints.put("TOTAL", summarize(total, totalErrors, elapsedSeconds));
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("batteries", batteries);
+        config.put("concurrency", concurrency);
+        config.put("warmupSeconds", warmup.toSeconds());
+        config.put("durationSeconds", duration.toSeconds());
+        config.put("virtualThreads", virtualThreads);
+        config.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("config", config);
+        results.put("endpoints", endpoints);
+        Files.createDirectories(report.toAbsolutePath().getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(report.toFile(), results);
+        return results;
+    }
+
+    private static Map<String, Object> summarize(Histogram histogram, long errors, double elapsedSeconds) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", histogram.getTotalCount());
+        summary.put("errors", errors);
+        summary.put("throughputPerSecond", round(histogram.getTotalCount() / elapsedSeconds));
+        summary.put("p50Ms", round(histogram.getValueAtPercentile(50) / 1000.0));
+        summary.put("p99Ms", round(histogram.getValueAtPercentile(99) / 1000.0));
+        summary.put("p999Ms", round(histogram.getValueAtPercentile(99.9) / 1000.0));
+        summary.put("maxMs", round(histogram.getMaxValue() / 1000.0));
+        return summary;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,134 @@
+package com.challenge.vpp.repo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BatteryIndexTest {
+
+    // Each partition has its own copy of every index, named after the partition and the indexed columns
+    private static final String PARTITIONS_SQL = "SELECT relid::regclass::text FROM pg_partition_tree('battery') WHERE isleaf";
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17-alpine")
+            .withDatabaseName("test_db")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        // Use the Flyway schema, indexes included, instead of the one Hibernate would generate
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        jdbcTemplate.queryForList(PARTITIONS_SQL, String.class).forEach(partition ->
+                jdbcTemplate.execute("ALTER TABLE " + partition + " SET (autovacuum_enabled = false)"));
+        jdbcTemplate.update("INSERT INTO battery (name, postcode, watt_capacity, created_at, modified_at) " +
+                "SELECT 'Battery' || i, 1000 + i % 9000, 100 + i % 5000, now(), now() " +
+                "FROM generate_series(1, 100000) i");
+        vacuumUntilAllVisible();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("TRUNCATE battery");
+    }
+
+    @Test
+    void summarizeRange_ShouldUseIndexOnlyScanOnPostcodeCapacityIndex() {
+        // Act
+        String plan = explain(BatteryRepository.SUMMARIZE_RANGE_SQL, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        // Assert
+        assertTrue(plan.contains("Index Only Scan using battery_region_2_postcode_watt_capacity_idx"), plan);
+    }
+
+    @Test
+    void findNamesInRange_ShouldUseIndexOnlyScanOnCoveringIndex() {
+        // Act
+        String plan = explain(BatteryRepository.FIND_NAMES_IN_RANGE_SQL, 500L, Long.MAX_VALUE);
+
+        // Assert
+        assertTrue(plan.contains("Index Only Scan using battery_region_2_postcode_watt_capacity_name_idx"), plan);
+    }
+
+    @Test
+    void findByPostcodeBetween_ShouldNotUseSequentialScan() {
+        // Act
+        String plan = String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT * FROM battery WHERE postcode BETWEEN 2000 AND 2100", String.class));
+
+        // Assert
+        assertTrue(plan.contains("battery_region_2_postcode_"), plan);
+        assertFalse(plan.contains("Seq Scan"), plan);
+    }
+
+    @Test
+    void findPageAfterPostcodeAndId_ShouldSeekOnPostcodeIdIndex() {
+        // Act
+        String plan = String.join("\n", namedParameterJdbcTemplate.queryForList(
+                "EXPLAIN " + BatteryRepository.FIND_PAGE_AFTER_POSTCODE_AND_ID_SQL,
+                Map.of("afterPostcode", 5000, "afterId", 50000L, "limit", 101), String.class));
+
+        // Assert
+        assertTrue(plan.contains("Index Scan using battery_region_5_postcode_id_idx"), plan);
+        assertFalse(plan.contains("Sort"), plan);
+    }
+
+    // Index-only scans are only planned once VACUUM has marked the heap pages of every partition all-visible,
+    // which Postgres may defer until the inserting transaction is outside every snapshot horizon
+    private void vacuumUntilAllVisible() throws InterruptedException {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            jdbcTemplate.execute("VACUUM ANALYZE battery");
+            Boolean allVisible = jdbcTemplate.queryForObject(
+                    "SELECT bool_and(relallvisible >= relpages) FROM pg_class WHERE oid::regclass::text IN (" + PARTITIONS_SQL + ")",
+                    Boolean.class);
+            if (Boolean.TRUE.equals(allVisible)) {
+                return;
+            }
+            Thread.sleep(250);
+        }
+        fail("battery heap was never marked all-visible");
+    }
+
+    private String explain(String sql, long minCapacity, long maxCapacity) {
+        List<String> plan = namedParameterJdbcTemplate.queryForList("EXPLAIN " + sql, Map.of(
+                "from", 2000,
+                "to", 2100,
+                "minCapacity", minCapacity,
+                "maxCapacity", maxCapacity), String.class);
+        return String.join("\n", plan);
+    }
+}
@@ -0,0 +1,158 @@
+package com.challenge.vpp.repo;
+
+import com.challenge.vpp.model.Battery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BatteryPartitionTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17-alpine")
+            .withDatabaseName("test_db")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private BatteryRepository batteryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        // The partitions come from Flyway
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("TRUNCATE battery");
+    }
+
+    @Test
+    void saveAll_ShouldStoreEachBatteryInItsPostcodeRegion() {
+        // Act
+        batteryRepository.saveAll(List.of(
+                battery("Battery1", 200, 100L),
+                battery("Battery2", 3000, 200L),
+                battery("Battery3", 54321, 300L)));
+
+        // Assert
+        assertEquals(List.of("battery_region_0", "battery_region_3", "battery_region_9"), jdbcTemplate.queryForList(
+                "SELECT tableoid::regclass::text FROM battery ORDER BY postcode", String.class));
+    }
+
+    @Test
+    void postcodeRangeQuery_ShouldOnlyScanRegionsItSpans() {
+        // Act
+        String plan = String.join("\n", jdbcTemplate.queryForList(
+                "EXPLAIN SELECT * FROM battery WHERE postcode BETWEEN 3500 AND 4500", String.class));
+
+        // Assert
+        assertTrue(plan.contains("battery_region_3"));
+        assertTrue(plan.contains("battery_region_4"));
+        assertFalse(plan.contains("battery_region_2"));
+        assertFalse(plan.contains("battery_region_5"));
+    }
+
+    @Test
+    void save_WithPostcodeInAnotherRegion_ShouldMoveBatteryAndKeepItsId() {
+        // Arrange
+        Battery battery = batteryRepository.saveAll(List.of(battery("Battery1", 2000, 100L))).getFirst();
+
+        // Act
+        battery.setPostcode(6000);
+        batteryRepository.save(battery);
+
+        // Assert
+        Battery moved = batteryRepository.findById(battery.getId()).orElseThrow();
+        assertEquals(6000, moved.getPostcode());
+        assertEquals(1, batteryRepository.findByPostcodeBetween(6000, 6999).size());
+        assertTrue(batteryRepository.findByPostcodeBetween(2000, 2999).isEmpty());
+        assertEquals(0, batteryRepository.summarizePostcodeRollup(2000, 2999).getCount());
+        assertEquals(100L, batteryRepository.summarizePostcodeRollup(6000, 6999).getTotalWattCapacity());
+    }
+
+    @Test
+    void insertPaths_ShouldDrawUniqueIdsFromBatterySeqAcrossRegions() {
+        // Arrange
+        Battery moved = batteryRepository.saveAll(List.of(
+                battery("Battery1", 200, 100L),
+                battery("Battery2", 5000, 200L))).getFirst();
+        jdbcTemplate.update("INSERT INTO battery (name, postcode, watt_capacity, created_at, modified_at) " +
+                "SELECT 'Sql' || i, i * 1000, 100, now(), now() FROM generate_series(0, 9) i");
+
+        // Act
+        moved.setPostcode(9000);
+        batteryRepository.save(moved);
+        batteryRepository.saveAll(List.of(battery("Battery3", 9000, 300L)));
+
+        // Assert
+        assertEquals(13, jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT id) FROM battery", Integer.class));
+        assertEquals(13, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM battery", Integer.class));
+        assertEquals("nextval('battery_seq'::regclass)", jdbcTemplate.queryForObject(
+                "SELECT column_default FROM information_schema.columns " +
+                "WHERE table_name = 'battery' AND column_name = 'id'", String.class));
+        assertEquals("battery.id", jdbcTemplate.queryForObject(
+                "SELECT d.refobjid::regclass || '.' || a.attname FROM pg_depend d " +
+                "JOIN pg_attribute a ON a.attrelid = d.refobjid AND a.attnum = d.refobjsubid " +
+                "WHERE d.objid = 'battery_seq'::regclass AND d.deptype = 'a'", String.class));
+    }
+
+    @Test
+    void bulkPaths_ShouldReserveOneSequenceBlockPerFiftyRows() {
+        // Act
+        batteryRepository.batchInsert(batteries("Bulk", 120));
+        batteryRepository.copyIn(batteries("Copy", 120).iterator());
+        batteryRepository.upsert(batteries("Upsert", 120));
+
+        // Assert: three blocks per path, where the column default would take one block per row
+        assertEquals(360, jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT id) FROM battery", Integer.class));
+        assertTrue(jdbcTemplate.queryForObject("SELECT MAX(id) - MIN(id) FROM battery", Long.class) < 9 * 50);
+    }
+
+    @Test
+    void migrations_ShouldLeaveNoBackfillObjectsBehind() {
+        // Assert
+        assertNull(jdbcTemplate.queryForObject("SELECT to_regclass('battery_partitioned')", String.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_proc WHERE proname LIKE 'battery_partition_%'", Integer.class));
+        assertEquals(List.of("battery_postcode_rollup_delete", "battery_postcode_rollup_insert",
+                        "battery_postcode_rollup_truncate", "battery_postcode_rollup_update"),
+                jdbcTemplate.queryForList("SELECT tgname FROM pg_trigger " +
+                        "WHERE tgrelid = 'battery'::regclass AND NOT tgisinternal ORDER BY tgname", String.class));
+    }
+
+    private static List<Battery> batteries(String prefix, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> battery(prefix + i, 1000 + i * 70, 100L + i))
+                .toList();
+    }
+
+    private static Battery battery(String name, int postcode, long wattCapacity) {
+        return Battery.builder().name(name).postcode(postcode).wattCapacity(wattCapacity).build();
+    }
+}
@@ -0,0 +1,227 @@
+package com.challenge.vpp.repo;
+
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.projection.BatteryPostcodeRollup;
+import com.challenge.vpp.repo.projection.BatteryRangeSummary;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BatteryPostcodeRollupTest {
+
+    private static final String ROLLUP_SQL = "SELECT postcode, battery_count, total_watt_capacity, " +
+            "min_watt_capacity, max_watt_capacity FROM battery_postcode_rollup ORDER BY postcode";
+    private static final String AGGREGATE_SQL = "SELECT postcode, COUNT(*) AS battery_count, " +
+            "SUM(watt_capacity)::bigint AS total_watt_capacity, MIN(watt_capacity) AS min_watt_capacity, " +
+            "MAX(watt_capacity) AS max_watt_capacity FROM battery GROUP BY postcode ORDER BY postcode";
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17-alpine")
+            .withDatabaseName("test_db")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private BatteryRepository batteryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        // The rollup triggers come from Flyway and would be dropped with a Hibernate-generated table
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("TRUNCATE battery");
+    }
+
+    @Test
+    void inserts_ShouldAddToRollup() {
+        // Act
+        batteryRepository.saveAll(Arrays.asList(
+                battery("Battery1", 2000, 100L),
+                battery("Battery2", 2000, 300L),
+                battery("Battery3", 2001, 200L)));
+        batteryRepository.batchInsert(List.of(battery("Battery4", 2000, 50L)));
+        batteryRepository.copyIn(List.of(battery("Battery5", 2002, 700L)).iterator());
+
+        // Assert
+        List<Map<String, Object>> rollup = jdbcTemplate.queryForList(ROLLUP_SQL);
+        assertEquals(3, rollup.size());
+        assertEquals(Map.of("postcode", 2000, "battery_count", 3L, "total_watt_capacity", 450L,
+                "min_watt_capacity", 50L, "max_watt_capacity", 300L), rollup.getFirst());
+        assertRollupMatchesBatteries();
+    }
+
+    @Test
+    void updates_ShouldMoveBatteryBetweenPostcodesAndRecomputeExtremes() {
+        // Arrange
+        List<Battery> saved = batteryRepository.saveAll(Arrays.asList(
+                battery("Battery1", 2000, 100L),
+                battery("Battery2", 2000, 300L),
+                battery("Battery3", 2001, 200L)));
+        Battery largest = saved.get(1);
+
+        // Act
+        largest.setPostcode(2001);
+        largest.setWattCapacity(50L);
+        batteryRepository.save(largest);
+
+        // Assert
+        BatteryRangeSummary moved = batteryRepository.summarizePostcodeRollup(2001, 2001);
+        assertEquals(2, moved.getCount());
+        assertEquals(250L, moved.getTotalWattCapacity());
+        assertEquals(50L, moved.getMinWattCapacity());
+        assertEquals(200L, moved.getMaxWattCapacity());
+        assertEquals(100L, batteryRepository.summarizePostcodeRollup(2000, 2000).getMaxWattCapacity());
+        assertRollupMatchesBatteries();
+    }
+
+    @Test
+    void deletes_ShouldRecomputeExtremesAndDropEmptyPostcodes() {
+        // Arrange
+        List<Battery> saved = batteryRepository.saveAll(Arrays.asList(
+                battery("Battery1", 2000, 100L),
+                battery("Battery2", 2000, 300L),
+                battery("Battery3", 2001, 200L)));
+
+        // Act
+        batteryRepository.delete(saved.get(0));
+        batteryRepository.delete(saved.get(2));
+
+        // Assert
+        BatteryRangeSummary remaining = batteryRepository.summarizePostcodeRollup(2000, 2001);
+        assertEquals(1, remaining.getCount());
+        assertEquals(300L, remaining.getMinWattCapacity());
+        assertEquals(1, jdbcTemplate.queryForList(ROLLUP_SQL).size());
+        assertRollupMatchesBatteries();
+    }
+
+    @Test
+    void truncate_ShouldClearRollup() {
+        // Arrange
+        batteryRepository.saveAll(List.of(battery("Battery1", 2000, 100L)));
+
+        // Act
+        jdbcTemplate.execute("TRUNCATE battery");
+
+        // Assert
+        assertTrue(jdbcTemplate.queryForList(ROLLUP_SQL).isEmpty());
+    }
+
+    @Test
+    void summarizePostcodeRollup_ShouldMatchSummarizeRange() {
+        // Arrange
+        batteryRepository.batchInsert(IntStream.range(0, 5000)
+                .mapToObj(i -> battery("Battery" + i, 1000 + i % 500, 100L + (i * 7919L) % 10007))
+                .toList());
+        jdbcTemplate.update("DELETE FROM battery WHERE watt_capacity < 2000");
+        jdbcTemplate.update("UPDATE battery SET watt_capacity = watt_capacity + 1 WHERE postcode BETWEEN 1100 AND 1200");
+
+        // Act
+        BatteryRangeSummary rollup = batteryRepository.summarizePostcodeRollup(1050, 1300);
+        BatteryRangeSummary scan = batteryRepository.summarizeRange(1050, 1300, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        // Assert
+        assertEquals(scan.getCount(), rollup.getCount());
+        assertEquals(scan.getTotalWattCapacity(), rollup.getTotalWattCapacity());
+        assertEquals(scan.getMinWattCapacity(), rollup.getMinWattCapacity());
+        assertEquals(scan.getMaxWattCapacity(), rollup.getMaxWattCapacity());
+        assertRollupMatchesBatteries();
+    }
+
+    @Test
+    void findPostcodeRollups_ShouldReturnOneRowPerPostcodeInOrder() {
+        // Arrange
+        batteryRepository.saveAll(Arrays.asList(
+                battery("Battery1", 3000, 700L),
+                battery("Battery2", 2000, 100L),
+                battery("Battery3", 2000, 300L)));
+
+        // Act
+        List<BatteryPostcodeRollup> rollups = batteryRepository.findPostcodeRollups();
+
+        // Assert
+        assertEquals(2, rollups.size());
+        BatteryPostcodeRollup first = rollups.getFirst();
+        assertEquals(2000, first.getPostcode());
+        assertEquals(2, first.getBatteryCount());
+        assertEquals(400L, first.getTotalWattCapacity());
+        assertEquals(100L, first.getMinWattCapacity());
+        assertEquals(300L, first.getMaxWattCapacity());
+        assertEquals(3000, rollups.get(1).getPostcode());
+    }
+
+    @Test
+    void findPostcodeRollups_ShouldCarryVersionThatOnlyWritesAdvance() {
+        // Arrange
+        List<BatteryPostcodeRollup> empty = batteryRepository.findPostcodeRollups();
+        List<BatteryPostcodeRollup> reread = batteryRepository.findPostcodeRollups();
+
+        // Act
+        batteryRepository.saveAll(List.of(battery("Battery1", 2000, 100L)));
+        List<BatteryPostcodeRollup> written = batteryRepository.findPostcodeRollups();
+
+        // Assert
+        assertEquals(1, empty.size());
+        assertNull(empty.getFirst().getPostcode());
+        assertEquals(empty.getFirst().getVersion(), reread.getFirst().getVersion());
+        assertEquals(2000, written.getFirst().getPostcode());
+        assertTrue(written.getFirst().getVersion() > empty.getFirst().getVersion());
+    }
+
+    @Test
+    void scanCapacityCounts_ShouldGroupCommittedBatteriesByPostcodeAndCapacity() {
+        // Arrange
+        batteryRepository.saveAll(Arrays.asList(
+                battery("Battery1", 2001, 300L),
+                battery("Battery2", 2000, 100L),
+                battery("Battery3", 2000, 100L),
+                battery("Battery4", 2000, 50L),
+                battery("Battery5", 3000, 700L)));
+        List<String> rows = new ArrayList<>();
+
+        // Act
+        batteryRepository.scanCapacityCounts(2000, 2999,
+                (postcode, wattCapacity, count) -> rows.add(postcode + ":" + wattCapacity + "x" + count));
+
+        // Assert
+        assertEquals(List.of("2000:50x1", "2000:100x2", "2001:300x1"), rows);
+    }
+
+    private void assertRollupMatchesBatteries() {
+        assertEquals(jdbcTemplate.queryForList(AGGREGATE_SQL), jdbcTemplate.queryForList(ROLLUP_SQL));
+    }
+
+    private static Battery battery(String name, int postcode, long wattCapacity) {
+        return Battery.builder().name(name).postcode(postcode).wattCapacity(wattCapacity).build();
+    }
+}
@@ -1,6 +1,7 @@
 package com.challenge.vpp.repo;
 
 import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.projection.BatteryRangeSummary;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
@@ -35,6 +36,8 @@ class BatteryRepositoryTest {
         registry.add("spring.datasource.url", postgres::getJdbcUrl);
         registry.add("spring.datasource.username", postgres::getUsername);
         registry.add("spring.datasource.password", postgres::getPassword);
+        // The schema comes from Flyway
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
     }
 
     @Test
@@ -147,6 +150,104 @@ class BatteryRepositoryTest {
         assertEquals("Battery1", result.get(0).getName());
     }
 
+    @Test
+    void summarizeRange_ShouldAggregateInDatabase() {
+        // Arrange
+        batteryRepository.saveAll(Arrays.asList(
+                Battery.builder().name("Battery1").postcode(2000).wattCapacity(100L).build(),
+                Battery.builder().name("Battery2").postcode(2001).wattCapacity(200L).build(),
+                Battery.builder().name("Battery3").postcode(3000).wattCapacity(300L).build()));
+
+        // Act
+        BatteryRangeSummary all = batteryRepository.summarizeRange(2000, 2001, Long.MIN_VALUE, Long.MAX_VALUE);
+        BatteryRangeSummary filtered = batteryRepository.summarizeRange(2000, 3000, 150L, Long.MAX_VALUE);
+        BatteryRangeSummary empty = batteryRepository.summarizeRange(9000, 9999, Long.MIN_VALUE, Long.MAX_VALUE);
+
+        // Assert
+        assertEquals(2, all.getCount());
+        assertEquals(300L, all.getTotalWattCapacity());
+        assertEquals(2, filtered.getCount());
+        assertEquals(500L, filtered.getTotalWattCapacity());
+        assertEquals(100L, all.getMinWattCapacity());
+        assertEquals(200L, all.getMaxWattCapacity());
+        assertEquals(200L, filtered.getMinWattCapacity());
+        assertEquals(300L, filtered.getMaxWattCapacity());
+        assertEquals(0, empty.getCount());
+        assertEquals(0L, empty.getTotalWattCapacity());
+        assertEquals(0L, empty.getMinWattCapacity());
+        assertEquals(0L, empty.getMaxWattCapacity());
+    }
+
+    @Test
+    void findNamesInRange_ShouldReturnNamesSortedByName() {
+        // Arrange
+        batteryRepository.saveAll(Arrays.asList(
+                Battery.builder().name("charlie").postcode(2000).wattCapacity(100L).build(),
+                Battery.builder().name("Alpha").postcode(2001).wattCapacity(200L).build(),
+                Battery.builder().name("Bravo").postcode(2002).wattCapacity(300L).build(),
+                Battery.builder().name("Delta").postcode(3000).wattCapacity(300L).build()));
+
+        // Act
+        List<String> names = batteryRepository.findNamesInRange(2000, 2002, Long.MIN_VALUE, 250L);
+
+        // Assert
+        assertEquals(Arrays.asList("Alpha", "charlie"), names);
+    }
+
+    @Test
+    void findNamesInRange_WithLimitAndOffset_ShouldReturnPageOfSortedNames() {
+        // Arrange
+        batteryRepository.saveAll(Arrays.asList(
+                Battery.builder().name("Delta").postcode(2000).wattCapacity(100L).build(),
+                Battery.builder().name("Alpha").postcode(2001).wattCapacity(200L).build(),
+                Battery.builder().name("Charlie").postcode(2002).wattCapacity(300L).build(),
+                Battery.builder().name("Bravo").postcode(2002).wattCapacity(400L).build(),
+                Battery.builder().name("Echo").postcode(3000).wattCapacity(300L).build()));
+
+        // Act
+        List<String> names = batteryRepository.findNamesInRange(2000, 2002, Long.MIN_VALUE, Long.MAX_VALUE, 2, 1);
+
+        // Assert
+        assertEquals(Arrays.asList("Bravo", "Charlie"), names);
+    }
+
+    @Test
+    void findPageAfterPostcodeAndId_ShouldSeekPastLastKey() {
+        // Arrange
+        List<Battery> saved = batteryRepository.saveAll(Arrays.asList(
+                Battery.builder().name("Battery1").postcode(2001).wattCapacity(100L).build(),
+                Battery.builder().name("Battery2").postcode(2000).wattCapacity(200L).build(),
+                Battery.builder().name("Battery3").postcode(2001).wattCapacity(300L).build(),
+                Battery.builder().name("Battery4").postcode(2002).wattCapacity(400L).build()));
+        batteryRepository.flush();
+
+        // Act
+        List<Battery> first = batteryRepository.findPageAfterPostcodeAndId(Integer.MIN_VALUE, Long.MIN_VALUE, 2);
+        Battery last = first.get(first.size() - 1);
+        List<Battery> second = batteryRepository.findPageAfterPostcodeAndId(last.getPostcode(), last.getId(), 2);
+
+        // Assert
+        assertEquals(Arrays.asList("Battery2", "Battery1"), first.stream().map(Battery::getName).toList());
+        assertEquals(Arrays.asList("Battery3", "Battery4"), second.stream().map(Battery::getName).toList());
+        assertEquals(saved.get(0).getId(), last.getId());
+    }
+
+    @Test
+    void findPageAfterId_ShouldSeekPastLastId() {
+        // Arrange
+        List<Battery> saved = batteryRepository.saveAll(Arrays.asList(
+                Battery.builder().name("Battery1").postcode(2001).wattCapacity(100L).build(),
+                Battery.builder().name("Battery2").postcode(2000).wattCapacity(200L).build(),
+                Battery.builder().name("Battery3").postcode(2002).wattCapacity(300L).build()));
+        batteryRepository.flush();
+
+        // Act
+        List<Battery> page = batteryRepository.findPageAfterId(saved.get(0).getId(), 10);
+
+        // Assert
+        assertEquals(Arrays.asList("Battery2", "Battery3"), page.stream().map(Battery::getName).toList());
+    }
+
     @Test
     void saveAll_ShouldPersistAllBatteries() {
         // Arrange
@@ -0,0 +1,117 @@
+package com.challenge.vpp.repo;
+
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryBulkRepository.UpsertedBattery;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BatteryUpsertTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:17-alpine")
+            .withDatabaseName("test_db")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Autowired
+    private BatteryRepository batteryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+        // The natural key index and the rollup triggers come from Flyway
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("TRUNCATE battery");
+    }
+
+    @Test
+    void upsert_ShouldInsertNewBatteriesAndUpdateExistingOnes() {
+        // Arrange
+        Battery existing = batteryRepository.upsert(List.of(battery("Battery1", 2000, 100L))).getFirst().battery();
+
+        // Act
+        List<UpsertedBattery> upserted = batteryRepository.upsert(List.of(
+                battery("Battery1", 2000, 150L),
+                battery("Battery2", 2000, 200L)));
+
+        // Assert
+        assertEquals(2, upserted.size());
+        UpsertedBattery updated = upserted.stream()
+                .filter(result -> result.battery().getName().equals("Battery1")).findFirst().orElseThrow();
+        assertEquals(existing.getId(), updated.battery().getId());
+        assertEquals(150L, updated.battery().getWattCapacity());
+        assertEquals(100L, updated.previous().getWattCapacity());
+        assertNull(upserted.stream()
+                .filter(result -> result.battery().getName().equals("Battery2")).findFirst().orElseThrow().previous());
+        assertEquals(2, batteryRepository.count());
+        assertEquals(350L, batteryRepository.summarizePostcodeRollup(2000, 2000).getTotalWattCapacity());
+    }
+
+    @Test
+    void upsert_WhenResent_ShouldLeaveRowsUntouched() {
+        // Arrange
+        List<Battery> batch = List.of(battery("Battery1", 2000, 100L), battery("Battery1", 2001, 300L));
+        batteryRepository.upsert(batch);
+
+        // Act
+        List<UpsertedBattery> resent = batteryRepository.upsert(batch);
+
+        // Assert
+        assertTrue(resent.isEmpty());
+        assertEquals(2, batteryRepository.count());
+    }
+
+    @Test
+    void upsert_WithRepeatedKeyInBatch_ShouldKeepLastRegistration() {
+        // Act
+        List<UpsertedBattery> upserted = batteryRepository.upsert(List.of(
+                battery("Battery1", 2000, 100L),
+                battery("Battery1", 2000, 400L)));
+
+        // Assert
+        assertEquals(1, upserted.size());
+        assertEquals(400L, batteryRepository.findAll().getFirst().getWattCapacity());
+    }
+
+    @Test
+    void saveAll_WithDuplicateNaturalKey_ShouldBeRejected() {
+        // Arrange
+        batteryRepository.saveAll(List.of(battery("Battery1", 2000, 100L)));
+
+        // Act & Assert
+        assertThrows(Exception.class, () -> batteryRepository.saveAll(List.of(battery("Battery1", 2000, 100L))));
+        assertEquals(1, batteryRepository.count());
+    }
+
+    private static Battery battery(String name, int postcode, long wattCapacity) {
+        return Battery.builder().name(name).postcode(postcode).wattCapacity(wattCapacity).build();
+    }
+}
@@ -0,0 +1,235 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryBulkRepository;
+import com.challenge.vpp.repo.BatteryRepository;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatteryCapacitySketchesTest {
+
+    @Mock
+    private BatteryRepository batteryRepository;
+
+    private BatteryCapacitySketches batteryCapacitySketches;
+    private List<Battery> batteries;
+
+    @BeforeEach
+    void setUp() {
+        batteryCapacitySketches = new BatteryCapacitySketches(batteryRepository, true, 2);
+        batteries = new ArrayList<>();
+    }
+
+    @Test
+    void merge_ComputesPercentilesWithinSignificantDigits() {
+        // Arrange
+        for (int i = 1; i <= 1000; i++) {
+            batteries.add(battery(6000 + i % 7, i * 100L));
+        }
+        stubScan();
+
+        // Act
+        Histogram histogram = batteryCapacitySketches.merge(6000, 6006);
+
+        // Assert
+        assertEquals(1000, histogram.getTotalCount());
+        assertEquals(50000.0, histogram.getValueAtPercentile(50), 500.0);
+        assertEquals(99000.0, histogram.getValueAtPercentile(99), 990.0);
+        assertEquals(100000.0, histogram.getMaxValue(), 1000.0);
+    }
+
+    @Test
+    void merge_WideRange_MatchesHistogramOfMatchingBatteries() {
+        // Arrange
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            batteries.add(battery(random.nextInt(1000), 100 + random.nextInt(100000)));
+        }
+        stubScan();
+        Histogram expected = new Histogram(2);
+        batteries.stream()
+                .filter(battery -> battery.getPostcode() >= 37 && battery.getPostcode() <= 901)
+                .forEach(battery -> expected.recordValue(battery.getWattCapacity()));
+
+        // Act
+        Histogram histogram = batteryCapacitySketches.merge(37, 901);
+
+        // Assert
+        assertEquals(expected.getTotalCount(), histogram.getTotalCount());
+        for (double percentile : new double[]{1, 25, 50, 90, 99.9}) {
+            assertEquals(expected.getValueAtPercentile(percentile), histogram.getValueAtPercentile(percentile));
+        }
+        assertEquals(expected.getMinValue(), histogram.getMinValue());
+        assertEquals(expected.getMaxValue(), histogram.getMaxValue());
+    }
+
+    @Test
+    void merge_LoadsEachRangeOnlyOnce() {
+        // Arrange
+        batteries.add(battery(6107, 13500L));
+        stubScan();
+
+        // Act
+        batteryCapacitySketches.merge(6000, 6199);
+        batteryCapacitySketches.merge(6100, 6150);
+        Histogram wider = batteryCapacitySketches.merge(5000, 6199);
+
+        // Assert
+        assertEquals(1, wider.getTotalCount());
+        verify(batteryRepository).scanCapacityCounts(eq(6000), eq(6199), any());
+        verify(batteryRepository).scanCapacityCounts(eq(5000), eq(5999), any());
+        verifyNoMoreInteractions(batteryRepository);
+    }
+
+    @Test
+    void onBatteriesChanged_ReloadsOnlyChangedPostcodes() {
+        // Arrange
+        Battery cannington = battery(6107, 13500L);
+        batteries.add(cannington);
+        batteries.add(battery(6057, 50500L));
+        stubScan();
+        batteryCapacitySketches.merge(6000, 6199);
+        BatteryChangedEvent.Entry before = BatteryChangedEvent.Entry.of(cannington);
+        cannington.setPostcode(6110);
+        cannington.setWattCapacity(20000L);
+
+        // Act
+        batteryCapacitySketches.onBatteriesChanged(BatteryChangedEvent.updated(before, cannington));
+        Histogram histogram = batteryCapacitySketches.merge(6100, 6199);
+
+        // Assert
+        assertEquals(1, histogram.getTotalCount());
+        assertEquals(20000.0, histogram.getMaxValue(), 200.0);
+        verify(batteryRepository).scanCapacityCounts(eq(6107), eq(6107), any());
+        verify(batteryRepository).scanCapacityCounts(eq(6110), eq(6110), any());
+        assertEquals(0, batteryCapacitySketches.merge(6107, 6107).getTotalCount());
+    }
+
+    @Test
+    void onBatteriesChanged_WhenReloadRequired_ReloadsQueriedRange() {
+        // Arrange
+        stubScan();
+        batteryCapacitySketches.merge(6000, 6199);
+        batteries.add(battery(6107, 13500L));
+
+        // Act
+        batteryCapacitySketches.onBatteriesChanged(BatteryChangedEvent.reloaded());
+        Histogram histogram = batteryCapacitySketches.merge(6000, 6199);
+
+        // Assert
+        assertEquals(1, histogram.getTotalCount());
+        verify(batteryRepository, times(2)).scanCapacityCounts(eq(6000), eq(6199), any());
+    }
+
+    @Test
+    void merge_DuringFirstLoad_WaitsForLoadInsteadOfReturningPartialDistribution() throws Exception {
+        // Arrange
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            BatteryBulkRepository.CapacityCountConsumer consumer = invocation.getArgument(2);
+            consumer.accept(6000, 100L, 1);
+            loadStarted.countDown();
+            assertTrue(releaseLoad.await(5, TimeUnit.SECONDS));
+            consumer.accept(6001, 200L, 1);
+            return null;
+        }).when(batteryRepository).scanCapacityCounts(anyInt(), anyInt(), any());
+        CompletableFuture<Histogram> first =
+                CompletableFuture.supplyAsync(() -> batteryCapacitySketches.merge(6000, 6199));
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<Histogram> concurrent =
+                CompletableFuture.supplyAsync(() -> batteryCapacitySketches.merge(6000, 6199));
+        Thread.sleep(100);
+        boolean answeredDuringLoad = concurrent.isDone();
+        releaseLoad.countDown();
+
+        // Assert
+        assertFalse(answeredDuringLoad);
+        assertEquals(2, first.get(5, TimeUnit.SECONDS).getTotalCount());
+        assertEquals(2, concurrent.get(5, TimeUnit.SECONDS).getTotalCount());
+        verify(batteryRepository, times(1)).scanCapacityCounts(anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void merge_WhenLoadFails_RetriesRangeOnNextQuery() {
+        // Arrange
+        batteries.add(battery(6107, 13500L));
+        doThrow(new DataAccessResourceFailureException("Connection refused"))
+                .doAnswer(invocation -> {
+                    BatteryBulkRepository.CapacityCountConsumer consumer = invocation.getArgument(2);
+                    consumer.accept(6107, 13500L, 1);
+                    return null;
+                })
+                .when(batteryRepository).scanCapacityCounts(anyInt(), anyInt(), any());
+
+        // Act
+        assertThrows(DataAccessResourceFailureException.class, () -> batteryCapacitySketches.merge(6000, 6199));
+        Histogram histogram = batteryCapacitySketches.merge(6000, 6199);
+
+        // Assert
+        assertEquals(1, histogram.getTotalCount());
+        verify(batteryRepository, times(2)).scanCapacityCounts(eq(6000), eq(6199), any());
+    }
+
+    @Test
+    void merge_WhenDisabled_ScansEveryTime() {
+        // Arrange
+        BatteryCapacitySketches disabled = new BatteryCapacitySketches(batteryRepository, false, 2);
+        batteries.add(battery(6107, 13500L));
+        stubScan();
+
+        // Act
+        disabled.merge(6000, 6199);
+        disabled.onBatteriesChanged(BatteryChangedEvent.reloaded());
+        Histogram histogram = disabled.merge(6000, 6199);
+
+        // Assert
+        assertEquals(1, histogram.getTotalCount());
+        verify(batteryRepository, times(2)).scanCapacityCounts(eq(6000), eq(6199), any());
+    }
+
+    private void stubScan() {
+        doAnswer(invocation -> {
+            int from = invocation.getArgument(0);
+            int to = invocation.getArgument(1);
+            BatteryBulkRepository.CapacityCountConsumer consumer = invocation.getArgument(2);
+            Map<Integer, Map<Long, Long>> counts = batteries.stream()
+                    .filter(battery -> battery.getPostcode() >= from && battery.getPostcode() <= to)
+                    .sorted(Comparator.comparingInt(Battery::getPostcode))
+                    .collect(Collectors.groupingBy(Battery::getPostcode, TreeMap::new,
+                            Collectors.groupingBy(Battery::getWattCapacity, TreeMap::new, Collectors.counting())));
+            counts.forEach((postcode, capacities) -> capacities.forEach(
+                    (capacity, count) -> consumer.accept(postcode, capacity, count)));
+            return null;
+        }).when(batteryRepository).scanCapacityCounts(anyInt(), anyInt(), any());
+    }
+
+    private static Battery battery(int postcode, long wattCapacity) {
+        return Battery.builder().name("Battery").postcode(postcode).wattCapacity(wattCapacity).build();
+    }
+}
@@ -0,0 +1,107 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.constant.BatteryLoadFormat;
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatteryExportServiceImplTest {
+
+    @Mock
+    private BatteryRepository batteryRepository;
+
+    private BatteryExportServiceImpl batteryExportService;
+
+    @BeforeEach
+    void setUp() {
+        batteryExportService = new BatteryExportServiceImpl(batteryRepository, new ObjectMapper());
+    }
+
+    @Test
+    void export_AsNdjson_WritesOneObjectPerLine() throws IOException {
+        // Arrange
+        stubScan(battery(1L, "Cannington", 6107, 13500L), battery(2L, "Say \"hi\"", 6057, 50500L));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // Act
+        long exported = batteryExportService.export(output, BatteryLoadFormat.NDJSON);
+
+        // Assert
+        assertEquals(2, exported);
+        assertEquals("""
+                {"id":1,"name":"Cannington","postcode":6107,"wattCapacity":13500}
+                {"id":2,"name":"Say \\"hi\\"","postcode":6057,"wattCapacity":50500}
+                """, output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void export_AsCsv_WritesHeaderAndQuotedNames() throws IOException {
+        // Arrange
+        stubScan(battery(1L, "Cannington", 6107, 13500L), battery(2L, "Say \"hi\"", 6057, 50500L));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // Act
+        long exported = batteryExportService.export(output, BatteryLoadFormat.CSV);
+
+        // Assert
+        assertEquals(2, exported);
+        assertEquals("""
+                id,name,postcode,capacity
+                1,"Cannington",6107,13500
+                2,"Say ""hi\"\"",6057,50500
+                """, output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void export_WhenClientDisconnects_PropagatesIOException() {
+        // Arrange
+        Battery[] batteries = new Battery[5000];
+        for (int i = 0; i < batteries.length; i++) {
+            batteries[i] = battery((long) i, "Battery" + i, 2000, 100L);
+        }
+        stubScan(batteries);
+        OutputStream closed = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        // Act & Assert
+        IOException exception = assertThrows(IOException.class,
+                () -> batteryExportService.export(closed, BatteryLoadFormat.CSV));
+        assertEquals("Broken pipe", exception.getMessage());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubScan(Battery... batteries) {
+        doAnswer(invocation -> {
+            Consumer<Battery> consumer = invocation.getArgument(0);
+            List.of(batteries).forEach(consumer);
+            return null;
+        }).when(batteryRepository).scanOrderedById(any(Consumer.class));
+    }
+
+    private static Battery battery(Long id, String name, int postcode, long wattCapacity) {
+        Battery battery = Battery.builder().name(name).postcode(postcode).wattCapacity(wattCapacity).build();
+        battery.setId(id);
+        return battery;
+    }
+}
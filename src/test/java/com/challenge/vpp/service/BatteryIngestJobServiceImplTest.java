@@ -0,0 +1,152 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.constant.BatteryIngestJobStatus;
+import com.challenge.vpp.dto.BatteryIngestJobResponse;
+import com.challenge.vpp.dto.BatteryRequest;
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.challenge.vpp.exception.BatteryDataException;
+import com.challenge.vpp.exception.IngestJobRejectedException;
+import com.challenge.vpp.exception.ResourceNotFoundException;
+import com.challenge.vpp.repo.BatteryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatteryIngestJobServiceImplTest {
+
+    @Mock
+    private BatteryRepository batteryRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BatteryIngestJobServiceImpl batteryIngestJobService;
+
+    @BeforeEach
+    void setUp() {
+        batteryIngestJobService = new BatteryIngestJobServiceImpl(batteryRepository,
+                Validation.buildDefaultValidatorFactory().getValidator(), eventPublisher,
+                new BatteryMetrics(new SimpleMeterRegistry()), transactionManager,
+                2, 1, 1, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        batteryIngestJobService.shutdown();
+    }
+
+    @Test
+    void submit_CommitsEachChunkSeparatelyAndReportsProgress() throws InterruptedException {
+        // Arrange
+        when(batteryRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        BatteryIngestJobResponse submitted = batteryIngestJobService.submit(requests(5));
+        BatteryIngestJobResponse finished = awaitFinished(submitted.getJobId());
+
+        // Assert
+        assertEquals(5, submitted.getRowsTotal());
+        assertEquals(BatteryIngestJobStatus.COMPLETED, finished.getStatus());
+        assertEquals(5, finished.getRowsDone());
+        assertEquals(0, finished.getRowsFailed());
+        assertNotNull(finished.getStartedAt());
+        assertTrue(finished.getRowsPerSecond() > 0);
+        verify(batteryRepository, times(3)).saveAll(anyList());
+        verify(transactionManager, times(3)).commit(any());
+        verify(eventPublisher, times(3)).publishEvent(any(BatteryChangedEvent.class));
+    }
+
+    @Test
+    void submit_WhenChunkFails_KeepsOtherChunksAndCountsFailures() throws InterruptedException {
+        // Arrange
+        when(batteryRepository.saveAll(anyList()))
+                .thenAnswer(invocation -> invocation.getArgument(0))
+                .thenThrow(new RuntimeException("duplicate key"));
+        List<BatteryRequest> requests = requests(5);
+        requests.get(4).setCapacity(-1L);
+
+        // Act
+        BatteryIngestJobResponse finished = awaitFinished(batteryIngestJobService.submit(requests).getJobId());
+
+        // Assert
+        assertEquals(BatteryIngestJobStatus.COMPLETED, finished.getStatus());
+        assertEquals(2, finished.getRowsDone());
+        assertEquals(3, finished.getRowsFailed());
+        assertEquals(List.of("Rows 2-3: duplicate key", "Validation failed - 4.capacity: Capacity must be a positive number"),
+                finished.getErrors());
+        verify(transactionManager).rollback(any());
+        verify(batteryRepository, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    void submit_WhenQueueIsFull_RejectsJob() throws InterruptedException {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        when(batteryRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            release.await();
+            return invocation.getArgument(0);
+        });
+        UUID running = batteryIngestJobService.submit(requests(1)).getJobId();
+        UUID queued = batteryIngestJobService.submit(requests(1)).getJobId();
+
+        // Act & Assert
+        assertThrows(IngestJobRejectedException.class, () -> batteryIngestJobService.submit(requests(1)));
+        assertEquals(BatteryIngestJobStatus.QUEUED, batteryIngestJobService.getJob(queued).getStatus());
+        release.countDown();
+        assertEquals(BatteryIngestJobStatus.COMPLETED, awaitFinished(running).getStatus());
+        assertEquals(BatteryIngestJobStatus.COMPLETED, awaitFinished(queued).getStatus());
+    }
+
+    @Test
+    void submit_WithEmptyList_ThrowsBatteryDataException() {
+        // Act & Assert
+        assertThrows(BatteryDataException.class, () -> batteryIngestJobService.submit(List.of()));
+        verifyNoInteractions(batteryRepository);
+    }
+
+    @Test
+    void getJob_WithUnknownId_ThrowsResourceNotFoundException() {
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> batteryIngestJobService.getJob(UUID.randomUUID()));
+    }
+
+    private BatteryIngestJobResponse awaitFinished(UUID jobId) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            BatteryIngestJobResponse job = batteryIngestJobService.getJob(jobId);
+            if (job.getFinishedAt() != null) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        return fail("Ingest job " + jobId + " did not finish");
+    }
+
+    private static List<BatteryRequest> requests(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> BatteryRequest.builder().name("Battery" + i).postcode(2000 + i).capacity(100L + i).build())
+                .collect(Collectors.toList());
+    }
+}
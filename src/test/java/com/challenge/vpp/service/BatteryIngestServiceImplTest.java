@@ -0,0 +1,186 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.constant.BatteryLoadFormat;
+import com.challenge.vpp.dto.BatteryIngestResponse;
+import com.challenge.vpp.exception.BatteryDataException;
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatteryIngestServiceImplTest {
+
+    @Mock
+    private BatteryRepository batteryRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private BatteryIngestServiceImpl batteryIngestService;
+
+    private final List<Battery> copied = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        batteryIngestService = new BatteryIngestServiceImpl(batteryRepository, Jackson2ObjectMapperBuilder.json().build(),
+                Validation.buildDefaultValidatorFactory().getValidator(), eventPublisher,
+                new BatteryMetrics(new SimpleMeterRegistry()), 2);
+    }
+
+    @Test
+    void load_WithCsv_SkipsHeaderAndRejectsInvalidRows() {
+        // Arrange
+        stubCopyIn();
+        String csv = """
+                name,postcode,capacity
+                Battery1,2000,100
+                "Battery, ""Two\""",2001,200
+
+                Battery3,not-a-number,300
+                Battery4,2003,-5
+                ,2004,400
+                """;
+
+        // Act
+        BatteryIngestResponse response = batteryIngestService.load(toStream(csv), BatteryLoadFormat.CSV);
+
+        // Assert
+        assertEquals(2, response.getRowsLoaded());
+        assertEquals(3, response.getRowsRejected());
+        assertEquals("Battery1", copied.get(0).getName());
+        assertEquals("Battery, \"Two\"", copied.get(1).getName());
+        assertEquals(2001, copied.get(1).getPostcode());
+        assertEquals(200L, copied.get(1).getWattCapacity());
+    }
+
+    @Test
+    void load_WithNdjson_RejectsMalformedLines() {
+        // Arrange
+        stubCopyIn();
+        String ndjson = """
+                {"name":"Battery1","postcode":2000,"capacity":100}
+                {"name":"Battery2","postcode":2001}
+                {not json
+                {"name":"Battery3","postcode":2002,"capacity":300}
+                """;
+
+        // Act
+        BatteryIngestResponse response = batteryIngestService.load(toStream(ndjson), BatteryLoadFormat.NDJSON);
+
+        // Assert
+        assertEquals(2, response.getRowsLoaded());
+        assertEquals(2, response.getRowsRejected());
+        assertEquals(List.of("Battery1", "Battery3"), copied.stream().map(Battery::getName).toList());
+    }
+
+    @Test
+    void load_WhenRepositoryThrowsException_ThrowsBatteryDataException() {
+        // Arrange
+        when(batteryRepository.copyIn(any())).thenThrow(new RuntimeException("Database error"));
+
+        // Act & Assert
+        assertThrows(BatteryDataException.class, () ->
+                batteryIngestService.load(toStream("Battery1,2000,100"), BatteryLoadFormat.CSV)
+        );
+    }
+
+    @Test
+    void load_WhenBatteryIsAlreadyRegistered_RethrowsIntegrityViolation() {
+        // Arrange
+        when(batteryRepository.copyIn(any())).thenThrow(new DuplicateKeyException("uk_battery_name_postcode"));
+
+        // Act & Assert
+        assertThrows(DuplicateKeyException.class, () ->
+                batteryIngestService.load(toStream("Battery1,2000,100"), BatteryLoadFormat.CSV)
+        );
+    }
+
+    @Test
+    void stream_FlushesBatteriesInFixedSizeChunks() {
+        // Arrange
+        List<Integer> chunkSizes = new ArrayList<>();
+        when(batteryRepository.batchInsert(anyList())).thenAnswer(invocation -> {
+            List<Battery> chunk = invocation.getArgument(0);
+            chunkSizes.add(chunk.size());
+            return chunk.size();
+        });
+        String body = """
+                {"source": {"ignored": [1, 2]}, "batteries": [
+                  {"name":"Battery1","postcode":2000,"capacity":100},
+                  {"name":"Battery2","postcode":2001,"capacity":200},
+                  {"name":"Battery3","postcode":2002,"capacity":300}
+                ]}
+                """;
+
+        // Act
+        BatteryIngestResponse response = batteryIngestService.stream(toStream(body));
+
+        // Assert
+        assertEquals(3, response.getRowsLoaded());
+        assertEquals(List.of(2, 1), chunkSizes);
+    }
+
+    @Test
+    void stream_WithInvalidBattery_ThrowsBatteryDataException() {
+        // Arrange
+        String body = """
+                {"batteries": [
+                  {"name":"Battery1","postcode":2000,"capacity":100},
+                  {"name":"","postcode":2001,"capacity":200}
+                ]}
+                """;
+
+        // Act & Assert
+        BatteryDataException exception = assertThrows(BatteryDataException.class, () ->
+                batteryIngestService.stream(toStream(body))
+        );
+        assertEquals("Validation failed - 1.name: Battery name cannot be blank", exception.getMessage());
+        verify(batteryRepository, never()).batchInsert(anyList());
+    }
+
+    @Test
+    void stream_WithEmptyBatteries_ThrowsBatteryDataException() {
+        // Act & Assert
+        assertThrows(BatteryDataException.class, () ->
+                batteryIngestService.stream(toStream("{\"batteries\": []}"))
+        );
+        assertThrows(BatteryDataException.class, () ->
+                batteryIngestService.stream(toStream("{\"other\": 1}"))
+        );
+        verify(batteryRepository, never()).batchInsert(anyList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubCopyIn() {
+        when(batteryRepository.copyIn(any())).thenAnswer(invocation -> {
+            Iterator<Battery> batteries = invocation.getArgument(0);
+            batteries.forEachRemaining(copied::add);
+            return (long) copied.size();
+        });
+    }
+
+    private static InputStream toStream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
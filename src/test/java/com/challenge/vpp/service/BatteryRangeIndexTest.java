@@ -0,0 +1,321 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatteryRangeIndexTest {
+
+    @Mock
+    private BatteryRepository batteryRepository;
+
+    private BatteryRangeIndex batteryRangeIndex;
+
+    @BeforeEach
+    void setUp() {
+        batteryRangeIndex = new BatteryRangeIndex(batteryRepository, true, Integer.MAX_VALUE, 1, 4096);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batteryRangeIndex.shutdown();
+    }
+
+    @Test
+    void query_BeforeRebuild_IsNotReady() {
+        // Act & Assert
+        assertFalse(batteryRangeIndex.isReady());
+        assertThrows(IllegalStateException.class, () -> batteryRangeIndex.query(2000, 2002, null, null, true));
+    }
+
+    @Test
+    void query_WithoutCapacityFilter_UsesPrefixSums() {
+        // Arrange
+        stubScan(battery(1L, "Cannington", 6107, 13500L), battery(2L, "Alpha", 6107, 500L),
+                battery(3L, "Midland", 6057, 50500L), battery(4L, "Hay Street", 6000, 32500L));
+        batteryRangeIndex.onApplicationReady();
+
+        // Act
+        BatteryRangeIndex.RangeStatistics statistics = batteryRangeIndex.query(6057, 6107, null, null, true);
+
+        // Assert
+        assertTrue(batteryRangeIndex.isReady());
+        assertEquals(3, statistics.count());
+        assertEquals(64500L, statistics.totalWattCapacity());
+        assertEquals(500L, statistics.minWattCapacity());
+        assertEquals(50500L, statistics.maxWattCapacity());
+        assertEquals(List.of("Alpha", "Cannington", "Midland"), statistics.names());
+    }
+
+    @Test
+    void query_WithCapacityFilter_ScansOnlyPostcodeRange() {
+        // Arrange
+        stubScan(battery(1L, "Cannington", 6107, 13500L), battery(2L, "Alpha", 6107, 500L),
+                battery(3L, "Midland", 6057, 50500L), battery(4L, "Hay Street", 6000, 32500L));
+        batteryRangeIndex.rebuild();
+
+        // Act
+        BatteryRangeIndex.RangeStatistics statistics = batteryRangeIndex.query(6000, 6107, 1000L, 40000L, false);
+
+        // Assert
+        assertEquals(2, statistics.count());
+        assertEquals(46000L, statistics.totalWattCapacity());
+        assertEquals(13500L, statistics.minWattCapacity());
+        assertEquals(32500L, statistics.maxWattCapacity());
+        assertNull(statistics.names());
+    }
+
+    @Test
+    void query_AcrossManyBlocks_MatchesFullScan() {
+        // Arrange
+        Battery[] batteries = new Battery[20000];
+        for (int i = 0; i < batteries.length; i++) {
+            batteries[i] = battery((long) i + 1, "Battery" + i, 2000 + i % 100, (i * 7919L) % 100003);
+        }
+        stubScan(batteries);
+        batteryRangeIndex.rebuild();
+
+        // Act
+        BatteryRangeIndex.RangeStatistics statistics = batteryRangeIndex.query(2013, 2087, null, null, true);
+        BatteryRangeIndex.RangeStatistics filtered = batteryRangeIndex.query(2013, 2087, 2000L, 8000L, true);
+
+        // Assert
+        List<Battery> inRange = List.of(batteries).stream()
+                .filter(battery -> battery.getPostcode() >= 2013 && battery.getPostcode() <= 2087)
+                .toList();
+        List<Battery> inWindow = inRange.stream()
+                .filter(battery -> battery.getWattCapacity() >= 2000L && battery.getWattCapacity() <= 8000L)
+                .toList();
+        assertEquals(inRange.size(), statistics.count());
+        assertEquals(inRange.stream().mapToLong(Battery::getWattCapacity).min().orElseThrow(), statistics.minWattCapacity());
+        assertEquals(inRange.stream().mapToLong(Battery::getWattCapacity).max().orElseThrow(), statistics.maxWattCapacity());
+        assertEquals(inWindow.size(), filtered.count());
+        assertEquals(inWindow.stream().mapToLong(Battery::getWattCapacity).sum(), filtered.totalWattCapacity());
+        assertEquals(inWindow.stream().mapToLong(Battery::getWattCapacity).min().orElseThrow(), filtered.minWattCapacity());
+        assertEquals(inWindow.stream().mapToLong(Battery::getWattCapacity).max().orElseThrow(), filtered.maxWattCapacity());
+        assertEquals(inWindow.stream().map(Battery::getName).sorted().toList(), filtered.names());
+    }
+
+    @Test
+    void query_AboveParallelThreshold_MatchesSequentialResult() {
+        // Arrange
+        Battery[] batteries = new Battery[20000];
+        for (int i = 0; i < batteries.length; i++) {
+            batteries[i] = battery((long) i + 1, "Battery" + (i * 7919L) % 20011, 2000 + i % 100, (i * 7919L) % 100003);
+        }
+        stubScan(batteries);
+        batteryRangeIndex.rebuild();
+        BatteryRangeIndex parallel = new BatteryRangeIndex(batteryRepository, true, 1000, 4, 4096);
+        parallel.rebuild();
+
+        try {
+            // Act
+            BatteryRangeIndex.RangeStatistics all = parallel.query(2013, 2087, null, null, true);
+            BatteryRangeIndex.RangeStatistics filtered = parallel.query(2013, 2087, 2000L, 60000L, true);
+            BatteryRangeIndex.RangeStatistics totals = parallel.query(2000, 2099, 50000L, null, false);
+
+            // Assert
+            assertEquals(batteryRangeIndex.query(2013, 2087, null, null, true), all);
+            assertEquals(batteryRangeIndex.query(2013, 2087, 2000L, 60000L, true), filtered);
+            assertEquals(batteryRangeIndex.query(2000, 2099, 50000L, null, false), totals);
+            assertTrue(filtered.count() > 1000);
+        } finally {
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    void query_WithNamesWindow_ReturnsSortedSliceAndFullTotals() {
+        // Arrange
+        Battery[] batteries = new Battery[1000];
+        for (int i = 0; i < batteries.length; i++) {
+            batteries[i] = battery((long) i + 1, "Battery" + (i * 7919L) % 1009, 2000 + i % 10, 100L + i);
+        }
+        stubScan(batteries);
+        batteryRangeIndex.rebuild();
+        List<String> sorted = List.of(batteries).stream().map(Battery::getName).sorted().toList();
+        List<String> sortedInWindow = List.of(batteries).stream()
+                .filter(battery -> battery.getWattCapacity() >= 600L)
+                .map(Battery::getName).sorted().toList();
+
+        // Act
+        BatteryRangeIndex.RangeStatistics head = batteryRangeIndex.query(2000, 2009, null, null, true, 20, 10);
+        BatteryRangeIndex.RangeStatistics tail = batteryRangeIndex.query(2000, 2009, null, null, true, 500, 900);
+        BatteryRangeIndex.RangeStatistics filtered = batteryRangeIndex.query(2000, 2009, 600L, null, true, 5, 0);
+        BatteryRangeIndex.RangeStatistics beyond = batteryRangeIndex.query(2000, 2009, null, null, true, 5, 1000);
+
+        // Assert
+        assertEquals(sorted.subList(10, 30), head.names());
+        assertEquals(1000, head.count());
+        assertEquals(sorted.subList(900, 1000), tail.names());
+        assertEquals(sortedInWindow.subList(0, 5), filtered.names());
+        assertEquals(500, filtered.count());
+        assertTrue(beyond.names().isEmpty());
+        assertEquals(1000, beyond.count());
+    }
+
+    @Test
+    void query_WithNoMatchingPostcodes_ReturnsEmptyStatistics() {
+        // Arrange
+        stubScan(battery(1L, "Cannington", 6107, 13500L));
+        batteryRangeIndex.rebuild();
+
+        // Act
+        BatteryRangeIndex.RangeStatistics statistics = batteryRangeIndex.query(7000, 8000, null, null, true);
+
+        // Assert
+        assertEquals(0, statistics.count());
+        assertEquals(0L, statistics.totalWattCapacity());
+        assertTrue(statistics.names().isEmpty());
+    }
+
+    @Test
+    void onBatteriesChanged_AppliesSavesUpdatesAndDeletes() {
+        // Arrange
+        Battery cannington = battery(1L, "Cannington", 6107, 13500L);
+        Battery midland = battery(2L, "Midland", 6057, 50500L);
+        stubScan(cannington, midland);
+        batteryRangeIndex.rebuild();
+
+        // Act
+        batteryRangeIndex.onBatteriesChanged(BatteryChangedEvent.saved(List.of(battery(3L, "Hay Street", 6000, 32500L))));
+        batteryRangeIndex.onBatteriesChanged(BatteryChangedEvent.updated(
+                BatteryChangedEvent.Entry.of(midland), battery(2L, "Midland", 6200, 1000L)));
+        batteryRangeIndex.onBatteriesChanged(BatteryChangedEvent.deleted(cannington));
+
+        // Assert
+        BatteryRangeIndex.RangeStatistics statistics = batteryRangeIndex.query(0, 9999, null, null, true);
+        assertEquals(List.of("Hay Street", "Midland"), statistics.names());
+        assertEquals(33500L, statistics.totalWattCapacity());
+        assertEquals(0, batteryRangeIndex.query(6057, 6107, null, null, false).count());
+        verify(batteryRepository, times(1)).scanOrderedByPostcode(any());
+    }
+
+    @Test
+    void onBatteriesChanged_BeyondMaxDelta_CompactsOverlayWithoutRescanning() {
+        // Arrange
+        BatteryRangeIndex compacting = new BatteryRangeIndex(batteryRepository, true, Integer.MAX_VALUE, 1, 2);
+        Battery cannington = battery(1L, "Cannington", 6107, 13500L);
+        Battery midland = battery(2L, "Midland", 6057, 50500L);
+        stubScan(cannington, midland, battery(3L, "Hay Street", 6000, 32500L));
+        compacting.rebuild();
+
+        // Act & Assert: the first update stays in the overlay, the delete pushes it past two changes
+        compacting.onBatteriesChanged(BatteryChangedEvent.updated(
+                BatteryChangedEvent.Entry.of(midland), battery(2L, "Midland", 6107, 500L)));
+        BatteryRangeIndex.RangeStatistics overlaid = compacting.query(6050, 6200, null, null, true);
+        assertEquals(List.of("Cannington", "Midland"), overlaid.names());
+        assertEquals(500L, overlaid.minWattCapacity());
+        assertEquals(14000L, overlaid.totalWattCapacity());
+
+        compacting.onBatteriesChanged(BatteryChangedEvent.deleted(cannington));
+        compacting.onBatteriesChanged(BatteryChangedEvent.saved(List.of(battery(4L, "Alpha", 6107, 7000L))));
+        BatteryRangeIndex.RangeStatistics compacted = compacting.query(6050, 6200, 1000L, null, true);
+        assertEquals(List.of("Alpha"), compacted.names());
+        assertEquals(7000L, compacted.maxWattCapacity());
+        assertEquals(3, compacting.query(0, 9999, null, null, false).count());
+        verify(batteryRepository, times(1)).scanOrderedByPostcode(any());
+    }
+
+    @Test
+    void onBatteriesChanged_WhenReloadRequired_RebuildsInBackgroundAndReplaysChanges() throws Exception {
+        // Arrange
+        stubScan(battery(1L, "Cannington", 6107, 13500L));
+        batteryRangeIndex.rebuild();
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            scanning.countDown();
+            release.await();
+            Consumer<Battery> consumer = invocation.getArgument(0);
+            consumer.accept(battery(1L, "Cannington", 6107, 13500L));
+            consumer.accept(battery(2L, "Alpha", 6200, 500L));
+            return null;
+        }).when(batteryRepository).scanOrderedByPostcode(any());
+
+        // Act
+        batteryRangeIndex.onBatteriesChanged(BatteryChangedEvent.reloaded());
+        boolean readyWhileStale = batteryRangeIndex.isReady();
+        assertTrue(scanning.await(5, TimeUnit.SECONDS));
+        batteryRangeIndex.onBatteriesChanged(BatteryChangedEvent.saved(List.of(battery(3L, "Midland", 6300, 100L))));
+        release.countDown();
+        awaitReady(batteryRangeIndex);
+
+        // Assert
+        assertFalse(readyWhileStale);
+        assertEquals(List.of("Alpha", "Cannington", "Midland"),
+                batteryRangeIndex.query(0, 9999, null, null, true).names());
+        verify(batteryRepository, times(2)).scanOrderedByPostcode(any());
+    }
+
+    @Test
+    void onBatteriesChanged_WhenBackgroundRebuildFails_StaysNotReady() {
+        // Arrange
+        stubScan(battery(1L, "Cannington", 6107, 13500L));
+        batteryRangeIndex.rebuild();
+        doThrow(new IllegalStateException("connection refused")).when(batteryRepository).scanOrderedByPostcode(any());
+
+        // Act
+        batteryRangeIndex.onBatteriesChanged(BatteryChangedEvent.reloaded());
+
+        // Assert
+        verify(batteryRepository, timeout(5000).times(2)).scanOrderedByPostcode(any());
+        assertFalse(batteryRangeIndex.isReady());
+    }
+
+    @Test
+    void onBatteriesChanged_WhenDisabled_IgnoresEvents() {
+        // Arrange
+        BatteryRangeIndex disabled = new BatteryRangeIndex(batteryRepository, false, Integer.MAX_VALUE, 1, 4096);
+
+        // Act
+        disabled.onApplicationReady();
+        disabled.onBatteriesChanged(BatteryChangedEvent.reloaded());
+
+        // Assert
+        assertFalse(disabled.isReady());
+        verifyNoInteractions(batteryRepository);
+    }
+
+    private static void awaitReady(BatteryRangeIndex index) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!index.isReady() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubScan(Battery... batteries) {
+        doAnswer(invocation -> {
+            Consumer<Battery> consumer = invocation.getArgument(0);
+            List.of(batteries).stream()
+                    .sorted((a, b) -> a.getPostcode() != b.getPostcode()
+                            ? Integer.compare(a.getPostcode(), b.getPostcode())
+                            : Long.compare(a.getId(), b.getId()))
+                    .forEach(consumer);
+            return null;
+        }).when(batteryRepository).scanOrderedByPostcode(any(Consumer.class));
+    }
+
+    private static Battery battery(Long id, String name, int postcode, long wattCapacity) {
+        Battery battery = Battery.builder().name(name).postcode(postcode).wattCapacity(wattCapacity).build();
+        battery.setId(id);
+        return battery;
+    }
+}
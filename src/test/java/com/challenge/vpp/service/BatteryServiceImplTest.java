@@ -1,29 +1,48 @@
 package com.challenge.vpp.service;
 
+import com.challenge.vpp.constant.BatterySeekOrder;
+import com.challenge.vpp.dto.BatteryCapacityDistributionResponse;
+import com.challenge.vpp.dto.BatteryCursorPage;
 import com.challenge.vpp.dto.BatteryRequest;
 import com.challenge.vpp.dto.BatteryResponse;
 import com.challenge.vpp.dto.BatteryStatisticsResponse;
+import com.challenge.vpp.dto.BatterySummaryResponse;
+import com.challenge.vpp.dto.BatteryUpsertResponse;
+import com.challenge.vpp.event.BatteryChangedEvent;
 import com.challenge.vpp.exception.BatteryDataException;
 import com.challenge.vpp.exception.InvalidCapacityRangeException;
 import com.challenge.vpp.exception.InvalidPostcodeRangeException;
 import com.challenge.vpp.exception.ResourceNotFoundException;
+import com.challenge.vpp.exception.WriteBufferFullException;
 import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryBulkRepository.UpsertedBattery;
 import com.challenge.vpp.repo.BatteryRepository;
+import com.challenge.vpp.repo.projection.BatteryRangeSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.Histogram;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyList;
@@ -35,6 +54,30 @@ class BatteryServiceImplTest {
     @Mock
     private BatteryRepository batteryRepository;
 
+    @Mock
+    private BatteryRangeIndex batteryRangeIndex;
+
+    @Mock
+    private BatteryCapacitySketches batteryCapacitySketches;
+
+    @Mock
+    private BatterySummarySnapshots batterySummarySnapshots;
+
+    @Mock
+    private BatteryWriteBehindBuffer batteryWriteBehindBuffer;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private BatteryStatisticsCache batteryStatisticsCache =
+            new BatteryStatisticsCache(new SimpleMeterRegistry(), false, 100, Duration.ofMinutes(1));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private BatteryMetrics batteryMetrics = new BatteryMetrics(meterRegistry);
+
     @InjectMocks
     private BatteryServiceImpl batteryService;
 
@@ -67,6 +110,7 @@ class BatteryServiceImplTest {
 
         // Assert
         verify(batteryRepository, times(1)).saveAll(anyList());
+        verify(eventPublisher).publishEvent(BatteryChangedEvent.saved(mockBatteries));
     }
 
     @Test
@@ -98,14 +142,134 @@ class BatteryServiceImplTest {
         );
     }
 
+    @Test
+    void saveAll_WhenBatteryAlreadyExists_PropagatesConflict() {
+        // Arrange
+        when(batteryRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint"));
+
+        // Act & Assert
+        assertThrows(DataIntegrityViolationException.class, () -> batteryService.saveAll(mockBatteryRequests));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void saveAll_WithWriteBehind_WaitsForBufferAndSkipsRepository() {
+        // Arrange
+        when(batteryWriteBehindBuffer.accepts(mockBatteryRequests)).thenReturn(true);
+        when(batteryWriteBehindBuffer.submit(mockBatteryRequests)).thenReturn(CompletableFuture.completedFuture(null));
+
+        // Act
+        assertDoesNotThrow(() -> batteryService.saveAll(mockBatteryRequests));
+
+        // Assert
+        verify(batteryRepository, never()).saveAll(anyList());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void saveAll_WhenWriteBehindFlushFails_ThrowsBatteryDataException() {
+        // Arrange
+        when(batteryWriteBehindBuffer.accepts(mockBatteryRequests)).thenReturn(true);
+        when(batteryWriteBehindBuffer.submit(mockBatteryRequests))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Database error")));
+
+        // Act & Assert
+        BatteryDataException exception = assertThrows(BatteryDataException.class,
+                () -> batteryService.saveAll(mockBatteryRequests));
+        assertEquals("Error saving battery data: Database error", exception.getMessage());
+    }
+
+    @Test
+    void saveAll_WhenWriteBehindTimesOut_ThrowsWriteBufferFullException() {
+        // Arrange
+        when(batteryWriteBehindBuffer.accepts(mockBatteryRequests)).thenReturn(true);
+        when(batteryWriteBehindBuffer.submit(mockBatteryRequests))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+
+        // Act & Assert
+        assertThrows(WriteBufferFullException.class, () -> batteryService.saveAll(mockBatteryRequests));
+    }
+
+    @Test
+    void bulkSave_SuccessfulInsert() {
+        // Arrange
+        when(batteryRepository.batchInsert(anyList())).thenReturn(mockBatteryRequests.size());
+
+        // Act
+        assertDoesNotThrow(() -> batteryService.bulkSave(mockBatteryRequests));
+
+        // Assert
+        verify(batteryRepository, times(1)).batchInsert(anyList());
+        verify(batteryRepository, never()).saveAll(anyList());
+        verify(eventPublisher).publishEvent(argThat((BatteryChangedEvent event) -> !event.reloadRequired()
+                && event.added().size() == mockBatteryRequests.size()));
+        assertEquals(mockBatteryRequests.size(),
+                meterRegistry.get("vpp.battery.ingest.batch.size").tag("path", "bulk").summary().totalAmount());
+    }
+
+    @Test
+    void bulkSave_WithEmptyList_ThrowsBatteryDataException() {
+        // Act & Assert
+        assertThrows(BatteryDataException.class, () ->
+            batteryService.bulkSave(Collections.emptyList())
+        );
+        verify(batteryRepository, never()).batchInsert(anyList());
+    }
+
+    @Test
+    void bulkSave_WhenRepositoryThrowsException_ThrowsBatteryDataException() {
+        // Arrange
+        when(batteryRepository.batchInsert(anyList())).thenThrow(new RuntimeException("Database error"));
+
+        // Act & Assert
+        assertThrows(BatteryDataException.class, () ->
+            batteryService.bulkSave(mockBatteryRequests)
+        );
+    }
+
+    @Test
+    void upsertAll_CountsInsertedUpdatedAndUnchangedAndPublishesReplacedRows() {
+        // Arrange
+        Battery previous = Battery.builder().name("Battery1").postcode(2000).wattCapacity(50L).build();
+        previous.setId(1L);
+        Battery updated = Battery.builder().name("Battery1").postcode(2000).wattCapacity(100L).build();
+        updated.setId(1L);
+        when(batteryRepository.upsert(anyList())).thenReturn(List.of(new UpsertedBattery(updated, previous)));
+        List<BatteryRequest> requests = List.of(mockBatteryRequests.get(0), mockBatteryRequests.get(1),
+                mockBatteryRequests.get(1));
+
+        // Act
+        BatteryUpsertResponse response = batteryService.upsertAll(requests);
+
+        // Assert
+        assertEquals(0, response.getInserted());
+        assertEquals(1, response.getUpdated());
+        assertEquals(2, response.getUnchanged());
+        verify(batteryRepository, never()).saveAll(anyList());
+        verify(eventPublisher).publishEvent(BatteryChangedEvent.upserted(List.of(updated), List.of(previous)));
+    }
+
+    @Test
+    void upsertAll_WhenRepositoryThrowsException_ThrowsBatteryDataException() {
+        // Arrange
+        when(batteryRepository.upsert(anyList())).thenThrow(new RuntimeException("Database error"));
+
+        // Act & Assert
+        assertThrows(BatteryDataException.class, () -> batteryService.upsertAll(mockBatteryRequests));
+        verifyNoInteractions(eventPublisher);
+    }
+
     @Test
     void getBatteriesInRange_SuccessfulRetrieval() {
         // Arrange
-        when(batteryRepository.findByPostcodeBetween(2000, 2002))
-                .thenReturn(mockBatteries);
+        when(batteryRepository.summarizePostcodeRollup(2000, 2002))
+                .thenReturn(summary(3, 600L));
+        when(batteryRepository.findNamesInRange(2000, 2002, Long.MIN_VALUE, Long.MAX_VALUE))
+                .thenReturn(Arrays.asList("Battery1", "Battery2", "Battery3"));
 
         // Act
-        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, null, null);
+        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, null, null, null, 0);
 
         // Assert
         assertNotNull(response);
@@ -113,17 +277,20 @@ class BatteryServiceImplTest {
         assertEquals(600L, response.getTotalWattCapacity());
         assertEquals(200.0, response.getAverageWattCapacity());
         assertTrue(response.getBatteries().containsAll(Arrays.asList("Battery1", "Battery2", "Battery3")));
+        assertEquals(3, meterRegistry.get("vpp.battery.rows.scanned").tag("source", "rollup").summary().totalAmount());
+        assertEquals(3, meterRegistry.get("vpp.battery.names.returned").summary().totalAmount());
     }
 
     @Test
     void getBatteriesInRange_WithCapacityRange_SuccessfulRetrieval() {
         // Arrange
-        List<Battery> filteredBatteries = Collections.singletonList(mockBatteries.get(1)); // Only Battery2
-        when(batteryRepository.findByPostcodeBetweenAndWattCapacityBetween(2000, 2002, 150L, 250L))
-                .thenReturn(filteredBatteries);
+        when(batteryRepository.summarizeRange(2000, 2002, 150L, 250L))
+                .thenReturn(summary(1, 200L));
+        when(batteryRepository.findNamesInRange(2000, 2002, 150L, 250L))
+                .thenReturn(Collections.singletonList("Battery2"));
 
         // Act
-        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, 150L, 250L);
+        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, 150L, 250L, null, 0);
 
         // Assert
         assertNotNull(response);
@@ -131,20 +298,19 @@ class BatteryServiceImplTest {
         assertEquals(200L, response.getTotalWattCapacity());
         assertEquals(200.0, response.getAverageWattCapacity());
         assertEquals("Battery2", response.getBatteries().getFirst());
+        verify(batteryRepository, never()).summarizePostcodeRollup(anyInt(), anyInt());
     }
 
     @Test
     void getBatteriesInRange_WithMinCapacityOnly_SuccessfulRetrieval() {
         // Arrange
-        List<Battery> filteredBatteries = Arrays.asList(
-                mockBatteries.get(1),
-                mockBatteries.get(2)
-        );
-        when(batteryRepository.findByPostcodeBetweenAndWattCapacityGreaterThanEqual(2000, 2002, 150L))
-                .thenReturn(filteredBatteries);
+        when(batteryRepository.summarizeRange(2000, 2002, 150L, Long.MAX_VALUE))
+                .thenReturn(summary(2, 500L));
+        when(batteryRepository.findNamesInRange(2000, 2002, 150L, Long.MAX_VALUE))
+                .thenReturn(Arrays.asList("Battery2", "Battery3"));
 
         // Act
-        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, 150L, null);
+        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, 150L, null, null, 0);
 
         // Assert
         assertNotNull(response);
@@ -156,15 +322,13 @@ class BatteryServiceImplTest {
     @Test
     void getBatteriesInRange_WithMaxCapacityOnly_SuccessfulRetrieval() {
         // Arrange
-        List<Battery> filteredBatteries = Arrays.asList(
-                mockBatteries.get(0),
-                mockBatteries.get(1)
-        );
-        when(batteryRepository.findByPostcodeBetweenAndWattCapacityLessThanEqual(2000, 2002, 250L))
-                .thenReturn(filteredBatteries);
+        when(batteryRepository.summarizeRange(2000, 2002, Long.MIN_VALUE, 250L))
+                .thenReturn(summary(2, 300L));
+        when(batteryRepository.findNamesInRange(2000, 2002, Long.MIN_VALUE, 250L))
+                .thenReturn(Arrays.asList("Battery1", "Battery2"));
 
         // Act
-        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, null, 250L);
+        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, null, 250L, null, 0);
 
         // Assert
         assertNotNull(response);
@@ -177,41 +341,42 @@ class BatteryServiceImplTest {
     void getBatteriesInRange_WithInvalidPostcodeRange_ThrowsInvalidPostcodeRangeException() {
         // Act & Assert
         assertThrows(InvalidPostcodeRangeException.class, () ->
-            batteryService.getBatteriesInRange(2002, 2000, null, null)
+            batteryService.getBatteriesInRange(2002, 2000, null, null, null, 0)
         );
-        verify(batteryRepository, never()).findByPostcodeBetween(anyInt(), anyInt());
+        verify(batteryRepository, never()).summarizeRange(anyInt(), anyInt(), anyLong(), anyLong());
     }
 
     @Test
     void getBatteriesInRange_WithInvalidCapacityRange_ThrowsInvalidCapacityRangeException() {
         // Act & Assert
         assertThrows(InvalidCapacityRangeException.class, () ->
-            batteryService.getBatteriesInRange(2000, 2002, 200L, 100L)
+            batteryService.getBatteriesInRange(2000, 2002, 200L, 100L, null, 0)
         );
-        verify(batteryRepository, never()).findByPostcodeBetweenAndWattCapacityBetween(
-            anyInt(), anyInt(), anyLong(), anyLong());
+        verify(batteryRepository, never()).summarizeRange(anyInt(), anyInt(), anyLong(), anyLong());
     }
 
     @Test
     void getBatteriesInRange_WhenRepositoryThrowsException_ThrowsBatteryDataException() {
         // Arrange
-        when(batteryRepository.findByPostcodeBetween(anyInt(), anyInt()))
+        when(batteryRepository.summarizePostcodeRollup(anyInt(), anyInt()))
                 .thenThrow(new RuntimeException("Database error"));
 
         // Act & Assert
         assertThrows(BatteryDataException.class, () ->
-            batteryService.getBatteriesInRange(2000, 2002, null, null)
+            batteryService.getBatteriesInRange(2000, 2002, null, null, null, 0)
         );
     }
 
     @Test
     void getBatteriesInRange_WithNoResults_ReturnsEmptyResponse() {
         // Arrange
-        when(batteryRepository.findByPostcodeBetween(anyInt(), anyInt()))
+        when(batteryRepository.summarizePostcodeRollup(anyInt(), anyInt()))
+                .thenReturn(summary(0, 0L));
+        when(batteryRepository.findNamesInRange(anyInt(), anyInt(), anyLong(), anyLong()))
                 .thenReturn(Collections.emptyList());
 
         // Act
-        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, null, null);
+        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, null, null, null, 0);
 
         // Assert
         assertNotNull(response);
@@ -221,23 +386,208 @@ class BatteryServiceImplTest {
     }
 
     @Test
-    void getBatteriesInRange_VerifyBatteriesAreSortedByName() {
+    void getBatteriesInRange_VerifyBatteriesKeepRepositoryNameOrder() {
         // Arrange
-        List<Battery> unsortedBatteries = Arrays.asList(
-                Battery.builder().name("Charlie").postcode(2000).wattCapacity(100L).build(),
-                Battery.builder().name("Alpha").postcode(2001).wattCapacity(200L).build(),
-                Battery.builder().name("Bravo").postcode(2002).wattCapacity(300L).build()
-        );
-        when(batteryRepository.findByPostcodeBetween(2000, 2002))
-                .thenReturn(unsortedBatteries);
+        when(batteryRepository.summarizePostcodeRollup(2000, 2002))
+                .thenReturn(summary(3, 600L));
+        when(batteryRepository.findNamesInRange(2000, 2002, Long.MIN_VALUE, Long.MAX_VALUE))
+                .thenReturn(Arrays.asList("Alpha", "Bravo", "Charlie"));
 
         // Act
-        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, null, null);
+        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, null, null, null, 0);
 
         // Assert
         assertEquals(Arrays.asList("Alpha", "Bravo", "Charlie"), response.getBatteries());
     }
 
+    @Test
+    void getStatisticsInRange_SkipsNameQuery() {
+        // Arrange
+        when(batteryRepository.summarizePostcodeRollup(2000, 2002))
+                .thenReturn(summary(3, 601L));
+
+        // Act
+        BatteryStatisticsResponse response = batteryService.getStatisticsInRange(2000, 2002, null, null);
+
+        // Assert
+        assertNull(response.getBatteries());
+        assertEquals(601L, response.getTotalWattCapacity());
+        assertEquals(200.33, response.getAverageWattCapacity());
+        verify(batteryRepository, never()).findNamesInRange(anyInt(), anyInt(), anyLong(), anyLong());
+        verify(batteryRepository, never()).summarizeRange(anyInt(), anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    void getStatisticsInRange_ReturnsMinMaxAndExactAverageForLargeTotals() {
+        // Arrange
+        when(batteryRepository.summarizePostcodeRollup(2000, 2002))
+                .thenReturn(summary(3, 9_007_199_254_740_993L, 100L, 9_000_000_000_000_000L));
+
+        // Act
+        BatteryStatisticsResponse response = batteryService.getStatisticsInRange(2000, 2002, null, null);
+
+        // Assert
+        assertEquals(100L, response.getMinWattCapacity());
+        assertEquals(9_000_000_000_000_000L, response.getMaxWattCapacity());
+        assertEquals(3_002_399_751_580_331.0, response.getAverageWattCapacity());
+    }
+
+    @Test
+    void getBatteriesInRange_WithLimitAndOffset_PushesWindowToRepository() {
+        // Arrange
+        when(batteryRepository.summarizePostcodeRollup(2000, 2002))
+                .thenReturn(summary(3, 600L));
+        when(batteryRepository.findNamesInRange(2000, 2002, Long.MIN_VALUE, Long.MAX_VALUE, 2, 1))
+                .thenReturn(Arrays.asList("Battery2", "Battery3"));
+
+        // Act
+        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, null, null, 2, 1);
+
+        // Assert
+        assertEquals(Arrays.asList("Battery2", "Battery3"), response.getBatteries());
+        assertEquals(3, response.getBatteryCount());
+        assertEquals(600L, response.getTotalWattCapacity());
+        verify(batteryRepository, never()).findNamesInRange(anyInt(), anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    void getBatteriesInRange_WithOffsetPastLastBattery_SkipsNameQuery() {
+        // Arrange
+        when(batteryRepository.summarizePostcodeRollup(2000, 2002))
+                .thenReturn(summary(3, 600L));
+
+        // Act
+        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, null, null, 10, 3);
+
+        // Assert
+        assertTrue(response.getBatteries().isEmpty());
+        assertEquals(3, response.getBatteryCount());
+        verify(batteryRepository, never()).findNamesInRange(anyInt(), anyInt(), anyLong(), anyLong(), anyInt(), anyInt());
+    }
+
+    @Test
+    void getBatteriesInRange_WithNegativeLimit_ThrowsBatteryDataException() {
+        // Act & Assert
+        assertThrows(BatteryDataException.class, () ->
+            batteryService.getBatteriesInRange(2000, 2002, null, null, -1, 0)
+        );
+        verifyNoInteractions(batteryRepository);
+    }
+
+    @Test
+    void getBatteriesInRange_WhenIndexReady_SkipsRepository() {
+        // Arrange
+        when(batteryRangeIndex.isReady()).thenReturn(true);
+        when(batteryRangeIndex.query(2000, 2002, 150L, null, true, Integer.MAX_VALUE, 0))
+                .thenReturn(new BatteryRangeIndex.RangeStatistics(2, 501L, 200L, 301L, List.of("Battery2", "Battery3")));
+
+        // Act
+        BatteryStatisticsResponse response = batteryService.getBatteriesInRange(2000, 2002, 150L, null, null, 0);
+
+        // Assert
+        assertEquals(List.of("Battery2", "Battery3"), response.getBatteries());
+        assertEquals(501L, response.getTotalWattCapacity());
+        assertEquals(250.5, response.getAverageWattCapacity());
+        assertEquals(200L, response.getMinWattCapacity());
+        assertEquals(301L, response.getMaxWattCapacity());
+        verifyNoInteractions(batteryRepository);
+    }
+
+    @Test
+    void getStatisticsInRange_WithInvalidPostcodeRange_ThrowsInvalidPostcodeRangeException() {
+        // Act & Assert
+        assertThrows(InvalidPostcodeRangeException.class, () ->
+            batteryService.getStatisticsInRange(2002, 2000, null, null)
+        );
+        verify(batteryRepository, never()).summarizeRange(anyInt(), anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    void getSnapshotSummary_ReturnsSnapshotTotalsWithVersionAndAge() {
+        // Arrange
+        Instant takenAt = Instant.now().minusSeconds(5);
+        when(batterySummarySnapshots.summarize(2000, 2002))
+                .thenReturn(new BatterySummarySnapshots.Summary(3, 601L, 100L, 301L, 7, takenAt));
+
+        // Act
+        BatterySummaryResponse response = batteryService.getSnapshotSummary(2000, 2002);
+
+        // Assert
+        assertEquals(3, response.getBatteryCount());
+        assertEquals(601L, response.getTotalWattCapacity());
+        assertEquals(200.33, response.getAverageWattCapacity());
+        assertEquals(100L, response.getMinWattCapacity());
+        assertEquals(301L, response.getMaxWattCapacity());
+        assertEquals(7, response.getSnapshotVersion());
+        assertEquals(takenAt, response.getSnapshotTakenAt());
+        assertTrue(response.getSnapshotAgeMillis() >= 5000);
+        verifyNoInteractions(batteryRepository);
+    }
+
+    @Test
+    void getSnapshotSummary_WithInvalidPostcodeRange_ThrowsInvalidPostcodeRangeException() {
+        // Act & Assert
+        assertThrows(InvalidPostcodeRangeException.class, () ->
+            batteryService.getSnapshotSummary(2002, 2000)
+        );
+        verifyNoInteractions(batterySummarySnapshots);
+    }
+
+    @Test
+    void getCapacityDistribution_ReturnsPercentilesAndEqualWidthBuckets() {
+        // Arrange
+        Histogram histogram = new Histogram(2);
+        for (long capacity = 1; capacity <= 100; capacity++) {
+            histogram.recordValue(capacity);
+        }
+        when(batteryCapacitySketches.merge(2000, 2100)).thenReturn(histogram);
+
+        // Act
+        BatteryCapacityDistributionResponse response =
+                batteryService.getCapacityDistribution(2000, 2100, List.of(50.0, 99.9), 4);
+
+        // Assert
+        assertEquals(100, response.getBatteryCount());
+        assertEquals(1L, response.getMinWattCapacity());
+        assertEquals(100L, response.getMaxWattCapacity());
+        assertEquals(50.5, response.getAverageWattCapacity());
+        assertEquals(Map.of("p50", 50L, "p99.9", 100L), response.getPercentiles());
+        assertEquals(List.of("p50", "p99.9"), List.copyOf(response.getPercentiles().keySet()));
+        assertEquals(4, response.getBuckets().size());
+        assertEquals(1L, response.getBuckets().getFirst().getFromWattCapacity());
+        assertEquals(25L, response.getBuckets().getFirst().getToWattCapacity());
+        assertEquals(100L, response.getBuckets().getLast().getToWattCapacity());
+        assertTrue(response.getBuckets().stream().allMatch(bucket -> bucket.getBatteryCount() == 25));
+    }
+
+    @Test
+    void getCapacityDistribution_WithNoBatteries_ReturnsEmptyBuckets() {
+        // Arrange
+        when(batteryCapacitySketches.merge(2000, 2100)).thenReturn(new Histogram(2));
+
+        // Act
+        BatteryCapacityDistributionResponse response =
+                batteryService.getCapacityDistribution(2000, 2100, List.of(50.0), 10);
+
+        // Assert
+        assertEquals(0, response.getBatteryCount());
+        assertEquals(0.0, response.getAverageWattCapacity());
+        assertEquals(Map.of("p50", 0L), response.getPercentiles());
+        assertTrue(response.getBuckets().isEmpty());
+    }
+
+    @Test
+    void getCapacityDistribution_WithInvalidPercentile_ThrowsBatteryDataException() {
+        // Act & Assert
+        assertThrows(BatteryDataException.class,
+                () -> batteryService.getCapacityDistribution(2000, 2100, List.of(50.0, 100.5), 10));
+        assertThrows(BatteryDataException.class,
+                () -> batteryService.getCapacityDistribution(2000, 2100, List.of(50.0), 101));
+        assertThrows(InvalidPostcodeRangeException.class,
+                () -> batteryService.getCapacityDistribution(2100, 2000, List.of(50.0), 10));
+        verifyNoInteractions(batteryCapacitySketches);
+    }
+
     @Test
     void getBatteryById_WhenBatteryExists_ReturnsCorrectBattery() {
         // Arrange
@@ -277,26 +627,30 @@ class BatteryServiceImplTest {
     void deleteBattery_WhenBatteryExists_DeletesSuccessfully() {
         // Arrange
         Long batteryId = 1L;
-        when(batteryRepository.existsById(batteryId)).thenReturn(true);
+        Battery battery = mockBatteries.get(0);
+        battery.setId(batteryId);
+        when(batteryRepository.findById(batteryId)).thenReturn(Optional.of(battery));
 
         // Act
         assertDoesNotThrow(() -> batteryService.deleteBattery(batteryId));
 
         // Assert
-        verify(batteryRepository).deleteById(batteryId);
+        verify(batteryRepository).delete(battery);
+        verify(eventPublisher).publishEvent(BatteryChangedEvent.deleted(battery));
     }
 
     @Test
     void deleteBattery_WhenBatteryNotFound_ThrowsResourceNotFoundException() {
         // Arrange
         Long batteryId = 1L;
-        when(batteryRepository.existsById(batteryId)).thenReturn(false);
+        when(batteryRepository.findById(batteryId)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(ResourceNotFoundException.class, () ->
                 batteryService.deleteBattery(batteryId)
         );
-        verify(batteryRepository, never()).deleteById(anyLong());
+        verify(batteryRepository, never()).delete(any(Battery.class));
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -334,6 +688,8 @@ class BatteryServiceImplTest {
         assertEquals(2001, response.getPostcode());
         assertEquals(200L, response.getWattCapacity());
         verify(batteryRepository).save(any(Battery.class));
+        verify(eventPublisher).publishEvent(BatteryChangedEvent.updated(
+                new BatteryChangedEvent.Entry(batteryId, "OldName", 2000, 100L), updatedBattery));
     }
 
     @Test
@@ -388,5 +744,85 @@ class BatteryServiceImplTest {
         assertEquals(0, response.getTotalElements());
     }
 
+    @Test
+    void getBatteriesAfter_WithoutCursor_ReturnsFirstPageAndNextCursor() {
+        // Arrange
+        for (int i = 0; i < mockBatteries.size(); i++) {
+            mockBatteries.get(i).setId(i + 1L);
+        }
+        when(batteryRepository.findPageAfterId(Long.MIN_VALUE, 3)).thenReturn(mockBatteries);
+
+        // Act
+        BatteryCursorPage page = batteryService.getBatteriesAfter(null, BatterySeekOrder.ID, 2);
 
+        // Assert
+        assertEquals(2, page.getSize());
+        assertEquals("Battery2", page.getContent().get(1).getName());
+        assertNotNull(page.getNextCursor());
+        verify(batteryRepository, never()).count();
+    }
+
+    @Test
+    void getBatteriesAfter_WithCursor_SeeksAfterLastPostcodeAndId() {
+        // Arrange
+        mockBatteries.get(1).setId(2L);
+        when(batteryRepository.findPageAfterPostcodeAndId(Integer.MIN_VALUE, Long.MIN_VALUE, 3))
+                .thenReturn(mockBatteries);
+        String cursor = batteryService.getBatteriesAfter("", BatterySeekOrder.POSTCODE, 2).getNextCursor();
+        when(batteryRepository.findPageAfterPostcodeAndId(2001, 2L, 3))
+                .thenReturn(List.of(mockBatteries.get(2)));
+
+        // Act
+        BatteryCursorPage page = batteryService.getBatteriesAfter(cursor, BatterySeekOrder.ID, 2);
+
+        // Assert
+        assertEquals(1, page.getSize());
+        assertEquals("Battery3", page.getContent().get(0).getName());
+        assertNull(page.getNextCursor());
+        verify(batteryRepository, never()).findPageAfterId(anyLong(), anyInt());
+    }
+
+    @Test
+    void getBatteriesAfter_WithInvalidCursor_ThrowsBatteryDataException() {
+        // Act & Assert
+        assertThrows(BatteryDataException.class, () ->
+                batteryService.getBatteriesAfter("not-a-cursor", BatterySeekOrder.ID, 10)
+        );
+    }
+
+    @Test
+    void getBatteriesAfter_WithOversizedPage_ThrowsBatteryDataException() {
+        // Act & Assert
+        assertThrows(BatteryDataException.class, () ->
+                batteryService.getBatteriesAfter(null, BatterySeekOrder.ID, 1001)
+        );
+    }
+
+    private static BatteryRangeSummary summary(long count, long totalWattCapacity) {
+        return summary(count, totalWattCapacity, 0L, 0L);
+    }
+
+    private static BatteryRangeSummary summary(long count, long totalWattCapacity, long minWattCapacity, long maxWattCapacity) {
+        return new BatteryRangeSummary() {
+            @Override
+            public long getCount() {
+                return count;
+            }
+
+            @Override
+            public long getTotalWattCapacity() {
+                return totalWattCapacity;
+            }
+
+            @Override
+            public long getMinWattCapacity() {
+                return minWattCapacity;
+            }
+
+            @Override
+            public long getMaxWattCapacity() {
+                return maxWattCapacity;
+            }
+        };
+    }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.dto.BatteryStatisticsResponse;
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.challenge.vpp.model.Battery;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatteryStatisticsCacheTest {
+
+    private static final BatteryStatisticsCache.Key PERTH = new BatteryStatisticsCache.Key(6000, 6199, null, null, true);
+    private static final BatteryStatisticsCache.Key SYDNEY = new BatteryStatisticsCache.Key(2000, 2999, null, null, true);
+
+    private SimpleMeterRegistry meterRegistry;
+    private BatteryStatisticsCache batteryStatisticsCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        batteryStatisticsCache = new BatteryStatisticsCache(meterRegistry, true, 100, Duration.ofMinutes(5));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void get_WithRepeatedKey_LoadsOnceAndRecordsHitRatio() {
+        // Act
+        BatteryStatisticsResponse first = batteryStatisticsCache.get(PERTH, loader(100L));
+        BatteryStatisticsResponse second = batteryStatisticsCache.get(PERTH, loader(200L));
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(0.5, meterRegistry.get("vpp.statistics.cache.hit.ratio").gauge().value());
+        assertEquals(0.5, meterRegistry.get("vpp.statistics.cache.miss.ratio").gauge().value());
+    }
+
+    @Test
+    void onBatteriesChanged_EvictsOnlyKeysCoveringChangedPostcode() {
+        // Arrange
+        batteryStatisticsCache.get(PERTH, loader(100L));
+        batteryStatisticsCache.get(SYDNEY, loader(200L));
+
+        // Act
+        batteryStatisticsCache.onBatteriesChanged(BatteryChangedEvent.saved(List.of(battery(6107, 13500L))));
+
+        // Assert
+        assertEquals(1, batteryStatisticsCache.size());
+        batteryStatisticsCache.get(SYDNEY, loader(300L));
+        batteryStatisticsCache.get(PERTH, loader(400L));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void onBatteriesChanged_KeepsKeysWhoseCapacityWindowExcludesBattery() {
+        // Arrange
+        BatteryStatisticsCache.Key large = new BatteryStatisticsCache.Key(6000, 6199, 20000L, null, false);
+        batteryStatisticsCache.get(large, loader(100L));
+
+        // Act
+        batteryStatisticsCache.onBatteriesChanged(BatteryChangedEvent.deleted(battery(6107, 13500L)));
+
+        // Assert
+        assertEquals(1, batteryStatisticsCache.size());
+    }
+
+    @Test
+    void onBatteriesChanged_WhenReloadRequired_ClearsCache() {
+        // Arrange
+        batteryStatisticsCache.get(PERTH, loader(100L));
+        batteryStatisticsCache.get(SYDNEY, loader(200L));
+
+        // Act
+        batteryStatisticsCache.onBatteriesChanged(BatteryChangedEvent.reloaded());
+
+        // Assert
+        assertEquals(0, batteryStatisticsCache.size());
+    }
+
+    @Test
+    void onBatteriesChanged_WithManyBatteries_EvictsWindowsHoldingAnyChangedPostcode() {
+        // Arrange
+        BatteryStatisticsCache.Key melbourne = new BatteryStatisticsCache.Key(3000, 3999, null, null, true);
+        BatteryStatisticsCache.Key small = new BatteryStatisticsCache.Key(6000, 6199, null, 100L, false);
+        batteryStatisticsCache.get(PERTH, loader(100L));
+        batteryStatisticsCache.get(SYDNEY, loader(200L));
+        batteryStatisticsCache.get(melbourne, loader(300L));
+        batteryStatisticsCache.get(small, loader(400L));
+
+        // Act
+        batteryStatisticsCache.onBatteriesChanged(BatteryChangedEvent.saved(List.of(
+                battery(2500, 13500L), battery(6107, 5000L), battery(6150, 20000L))));
+
+        // Assert
+        assertEquals(2, batteryStatisticsCache.size());
+        batteryStatisticsCache.get(melbourne, loader(500L));
+        batteryStatisticsCache.get(small, loader(600L));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void get_WithNamesOverMaximumWeight_DoesNotKeepEntry() {
+        // Arrange
+        List<String> names = IntStream.range(0, 150).mapToObj(i -> "Battery" + i).toList();
+
+        // Act
+        batteryStatisticsCache.get(PERTH, () -> BatteryStatisticsResponse.builder().batteries(names).build());
+        batteryStatisticsCache.get(SYDNEY, loader(200L));
+
+        // Assert
+        assertEquals(1, batteryStatisticsCache.size());
+    }
+
+    @Test
+    void get_WhenEvictedWhileLoading_DoesNotKeepStaleResult() {
+        // Act
+        batteryStatisticsCache.get(PERTH, () -> {
+            batteryStatisticsCache.onBatteriesChanged(BatteryChangedEvent.saved(List.of(battery(6107, 13500L))));
+            return BatteryStatisticsResponse.builder().totalWattCapacity(100L).build();
+        });
+
+        // Assert
+        assertEquals(0, batteryStatisticsCache.size());
+    }
+
+    @Test
+    void get_WhenDisabled_AlwaysLoads() {
+        // Arrange
+        BatteryStatisticsCache disabled = new BatteryStatisticsCache(new SimpleMeterRegistry(), false, 100, Duration.ofMinutes(5));
+
+        // Act
+        disabled.get(PERTH, loader(100L));
+        disabled.get(PERTH, loader(100L));
+
+        // Assert
+        assertEquals(2, loads.get());
+        assertEquals(0, disabled.size());
+    }
+
+    private Supplier<BatteryStatisticsResponse> loader(long totalWattCapacity) {
+        return () -> {
+            loads.incrementAndGet();
+            return BatteryStatisticsResponse.builder().totalWattCapacity(totalWattCapacity).build();
+        };
+    }
+
+    private static Battery battery(int postcode, long wattCapacity) {
+        Battery battery = Battery.builder().name("Battery").postcode(postcode).wattCapacity(wattCapacity).build();
+        battery.setId(1L);
+        return battery;
+    }
+}
@@ -0,0 +1,163 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.repo.BatteryRepository;
+import com.challenge.vpp.repo.projection.BatteryPostcodeRollup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatterySummarySnapshotsTest {
+
+    @Mock
+    private BatteryRepository batteryRepository;
+
+    private BatterySummarySnapshots batterySummarySnapshots;
+
+    @BeforeEach
+    void setUp() {
+        batterySummarySnapshots = new BatterySummarySnapshots(batteryRepository, new SimpleMeterRegistry(),
+                Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        batterySummarySnapshots.shutdown();
+    }
+
+    @Test
+    void summarize_AddsUpPostcodesInRange() {
+        // Arrange
+        when(batteryRepository.findPostcodeRollups()).thenReturn(List.of(
+                rollup(2000, 2, 300L, 100L, 200L, 5),
+                rollup(2005, 1, 50L, 50L, 50L, 5),
+                rollup(3000, 3, 900L, 250L, 400L, 5)));
+
+        // Act
+        BatterySummarySnapshots.Summary summary = batterySummarySnapshots.summarize(2000, 2999);
+        BatterySummarySnapshots.Summary everything = batterySummarySnapshots.summarize(1, Integer.MAX_VALUE);
+
+        // Assert
+        assertEquals(3, summary.count());
+        assertEquals(350L, summary.totalWattCapacity());
+        assertEquals(50L, summary.minWattCapacity());
+        assertEquals(200L, summary.maxWattCapacity());
+        assertEquals(6, everything.count());
+        assertEquals(1250L, everything.totalWattCapacity());
+        assertEquals(400L, everything.maxWattCapacity());
+        verify(batteryRepository, times(1)).findPostcodeRollups();
+    }
+
+    @Test
+    void summarize_WithNoPostcodesInRange_ReturnsZeros() {
+        // Arrange
+        when(batteryRepository.findPostcodeRollups()).thenReturn(List.of(rollup(2000, 2, 300L, 100L, 200L, 5)));
+
+        // Act
+        BatterySummarySnapshots.Summary summary = batterySummarySnapshots.summarize(2001, 2999);
+
+        // Assert
+        assertEquals(0, summary.count());
+        assertEquals(0L, summary.totalWattCapacity());
+        assertEquals(0L, summary.minWattCapacity());
+        assertEquals(5, summary.version());
+    }
+
+    @Test
+    void summarize_WithEmptyRollup_ReturnsZerosAtDatabaseVersion() {
+        // Arrange
+        when(batteryRepository.findPostcodeRollups()).thenReturn(List.of(rollup(null, 0, 0L, 0L, 0L, 12)));
+
+        // Act
+        BatterySummarySnapshots.Summary summary = batterySummarySnapshots.summarize(1, Integer.MAX_VALUE);
+
+        // Assert
+        assertEquals(0, summary.count());
+        assertEquals(12, summary.version());
+    }
+
+    @Test
+    void refresh_TakesVersionFromDatabase() {
+        // Arrange
+        when(batteryRepository.findPostcodeRollups())
+                .thenReturn(List.of(rollup(2000, 2, 300L, 100L, 200L, 41)))
+                .thenReturn(List.of(rollup(2000, 2, 300L, 100L, 200L, 41)))
+                .thenReturn(List.of(rollup(2000, 3, 500L, 100L, 200L, 44)));
+
+        // Act
+        batterySummarySnapshots.refresh();
+        BatterySummarySnapshots.Summary first = batterySummarySnapshots.summarize(2000, 2000);
+        batterySummarySnapshots.refresh();
+        BatterySummarySnapshots.Summary unchanged = batterySummarySnapshots.summarize(2000, 2000);
+        batterySummarySnapshots.refresh();
+        BatterySummarySnapshots.Summary changed = batterySummarySnapshots.summarize(2000, 2000);
+
+        // Assert
+        assertEquals(41, first.version());
+        assertEquals(41, unchanged.version());
+        assertFalse(unchanged.takenAt().isBefore(first.takenAt()));
+        assertEquals(44, changed.version());
+        assertEquals(3, changed.count());
+    }
+
+    @Test
+    void refresh_WhenRollupReadFails_KeepsServingPreviousSnapshot() {
+        // Arrange
+        when(batteryRepository.findPostcodeRollups())
+                .thenReturn(List.of(rollup(2000, 2, 300L, 100L, 200L, 7)))
+                .thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        batterySummarySnapshots.refresh();
+
+        // Act & Assert
+        assertThrows(DataAccessResourceFailureException.class, () -> batterySummarySnapshots.refresh());
+        BatterySummarySnapshots.Summary summary = batterySummarySnapshots.summarize(2000, 2000);
+        assertEquals(7, summary.version());
+        assertEquals(300L, summary.totalWattCapacity());
+    }
+
+    private static BatteryPostcodeRollup rollup(Integer postcode, long batteryCount, long totalWattCapacity,
+                                                long minWattCapacity, long maxWattCapacity, long version) {
+        return new BatteryPostcodeRollup() {
+            @Override
+            public Integer getPostcode() {
+                return postcode;
+            }
+
+            @Override
+            public long getBatteryCount() {
+                return batteryCount;
+            }
+
+            @Override
+            public long getTotalWattCapacity() {
+                return totalWattCapacity;
+            }
+
+            @Override
+            public long getMinWattCapacity() {
+                return minWattCapacity;
+            }
+
+            @Override
+            public long getMaxWattCapacity() {
+                return maxWattCapacity;
+            }
+
+            @Override
+            public long getVersion() {
+                return version;
+            }
+        };
+    }
+}
@@ -0,0 +1,228 @@
+package com.challenge.vpp.service;
+
+import com.challenge.vpp.dto.BatteryRequest;
+import com.challenge.vpp.event.BatteryChangedEvent;
+import com.challenge.vpp.exception.WriteBufferFullException;
+import com.challenge.vpp.model.Battery;
+import com.challenge.vpp.repo.BatteryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatteryWriteBehindBufferTest {
+
+    @Mock
+    private BatteryRepository batteryRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final BatteryMetrics batteryMetrics = new BatteryMetrics(new SimpleMeterRegistry());
+
+    private BatteryWriteBehindBuffer batteryWriteBehindBuffer;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (batteryWriteBehindBuffer != null) {
+            batteryWriteBehindBuffer.shutdown();
+        }
+    }
+
+    @Test
+    void submit_CoalescesRegistrationsIntoOneTransaction() {
+        // Arrange
+        List<List<Battery>> batches = new ArrayList<>();
+        when(batteryRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Battery> batteries = invocation.getArgument(0);
+            batches.add(batteries);
+            return batteries;
+        });
+        batteryWriteBehindBuffer = buffer(6, Duration.ofSeconds(5), 100);
+
+        // Act
+        List<CompletableFuture<Void>> acks = IntStream.range(0, 3)
+                .mapToObj(i -> batteryWriteBehindBuffer.submit(List.of(request(2 * i), request(2 * i + 1))))
+                .toList();
+        CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).join();
+
+        // Assert
+        assertEquals(1, batches.size());
+        assertEquals(6, batches.getFirst().size());
+        verify(transactionManager).commit(any());
+        verify(eventPublisher).publishEvent(any(BatteryChangedEvent.class));
+    }
+
+    @Test
+    void submit_FlushesPartialBatchAfterMaxDelay() {
+        // Arrange
+        when(batteryRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        batteryWriteBehindBuffer = buffer(500, Duration.ofMillis(20), 100);
+
+        // Act
+        CompletableFuture<Void> ack = batteryWriteBehindBuffer.submit(List.of(request(1)));
+
+        // Assert
+        assertDoesNotThrow(() -> ack.get(5, TimeUnit.SECONDS));
+        verify(batteryRepository).saveAll(anyList());
+    }
+
+    @Test
+    void submit_WhenBatchFails_RetriesEachRegistrationAlone() {
+        // Arrange
+        when(batteryRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Battery> batteries = invocation.getArgument(0);
+            if (batteries.stream().anyMatch(battery -> battery.getName().equals("Bad"))) {
+                throw new IllegalStateException("value too long");
+            }
+            return batteries;
+        });
+        batteryWriteBehindBuffer = buffer(2, Duration.ofSeconds(5), 100);
+
+        // Act
+        CompletableFuture<Void> good = batteryWriteBehindBuffer.submit(List.of(request(1)));
+        CompletableFuture<Void> bad = batteryWriteBehindBuffer.submit(
+                List.of(BatteryRequest.builder().name("Bad").postcode(2000).capacity(100L).build()));
+
+        // Assert
+        assertDoesNotThrow(() -> good.get(5, TimeUnit.SECONDS));
+        CompletionException failure = assertThrows(CompletionException.class, bad::join);
+        assertEquals("value too long", failure.getCause().getMessage());
+        verify(batteryRepository, times(3)).saveAll(anyList());
+        verify(transactionManager, times(2)).rollback(any());
+    }
+
+    @Test
+    void submit_WhenBufferIsFull_BlocksThenRejects() throws InterruptedException {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        when(batteryRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            release.await();
+            return invocation.getArgument(0);
+        });
+        batteryWriteBehindBuffer = new BatteryWriteBehindBuffer(batteryRepository, eventPublisher, batteryMetrics, transactionManager,
+                true, 2, Duration.ZERO, 2, Duration.ofMillis(50), Duration.ofSeconds(5));
+        CompletableFuture<Void> first = batteryWriteBehindBuffer.submit(List.of(request(1), request(2)));
+
+        // Act & Assert
+        assertThrows(WriteBufferFullException.class, () -> batteryWriteBehindBuffer.submit(List.of(request(3))));
+        release.countDown();
+        first.join();
+        assertDoesNotThrow(() -> batteryWriteBehindBuffer.submit(List.of(request(3))).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submit_RacingShutdown_CompletesEveryAcceptedRegistration() throws InterruptedException {
+        // Arrange
+        when(batteryRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        batteryWriteBehindBuffer = buffer(4, Duration.ofMillis(1), 10_000);
+        List<CompletableFuture<Void>> acks = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> submitters = IntStream.range(0, 4)
+                .mapToObj(i -> Thread.ofPlatform().start(() -> {
+                    try {
+                        for (int n = 0; ; n++) {
+                            acks.add(batteryWriteBehindBuffer.submit(List.of(request(n))));
+                            started.countDown();
+                        }
+                    } catch (WriteBufferFullException e) {
+                        // Rejected once the buffer stops running
+                    }
+                }))
+                .toList();
+        started.await();
+
+        // Act
+        batteryWriteBehindBuffer.shutdown();
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        // Assert
+        assertFalse(acks.isEmpty());
+        assertTrue(acks.stream().allMatch(CompletableFuture::isDone));
+    }
+
+    @Test
+    void submit_WhenFlusherDies_FailsWaitingRegistrationsAndRefusesNewOnes() {
+        // Arrange
+        when(batteryRepository.saveAll(anyList())).thenThrow(new StackOverflowError());
+        batteryWriteBehindBuffer = buffer(1, Duration.ofMillis(10), 100);
+
+        // Act
+        CompletableFuture<Void> ack = batteryWriteBehindBuffer.submit(List.of(request(1)));
+
+        // Assert
+        CompletionException failure = assertThrows(CompletionException.class, ack::join);
+        assertEquals("Battery write buffer stopped", failure.getCause().getMessage());
+        assertInstanceOf(StackOverflowError.class, failure.getCause().getCause());
+        assertThrows(WriteBufferFullException.class, () -> batteryWriteBehindBuffer.submit(List.of(request(2))));
+    }
+
+    @Test
+    void submit_WhenCommitTakesLongerThanTimeout_FailsWithTimeout() {
+        // Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        when(batteryRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            release.await();
+            return invocation.getArgument(0);
+        });
+        batteryWriteBehindBuffer = new BatteryWriteBehindBuffer(batteryRepository, eventPublisher, batteryMetrics,
+                transactionManager, true, 1, Duration.ZERO, 100, Duration.ofSeconds(1), Duration.ofMillis(50));
+
+        // Act
+        CompletableFuture<Void> ack = batteryWriteBehindBuffer.submit(List.of(request(1)));
+
+        // Assert
+        CompletionException failure = assertThrows(CompletionException.class, ack::join);
+        assertInstanceOf(TimeoutException.class, failure.getCause());
+        release.countDown();
+    }
+
+    @Test
+    void accepts_WhenDisabledOrRegistrationExceedsBuffer_ReturnsFalse() {
+        // Arrange
+        batteryWriteBehindBuffer = buffer(2, Duration.ofMillis(10), 2);
+        BatteryWriteBehindBuffer disabled = new BatteryWriteBehindBuffer(batteryRepository, eventPublisher,
+                batteryMetrics, transactionManager, false, 2, Duration.ofMillis(10), 2, Duration.ofSeconds(1),
+                Duration.ofSeconds(5));
+
+        // Act & Assert
+        assertTrue(batteryWriteBehindBuffer.accepts(List.of(request(1), request(2))));
+        assertFalse(batteryWriteBehindBuffer.accepts(List.of(request(1), request(2), request(3))));
+        assertFalse(disabled.accepts(List.of(request(1))));
+    }
+
+    private BatteryWriteBehindBuffer buffer(int batchSize, Duration maxDelay, int maxBuffered) {
+        return new BatteryWriteBehindBuffer(batteryRepository, eventPublisher, batteryMetrics, transactionManager,
+                true, batchSize, maxDelay, maxBuffered, Duration.ofSeconds(1), Duration.ofSeconds(5));
+    }
+
+    private static BatteryRequest request(int i) {
+        return BatteryRequest.builder().name("Battery" + i).postcode(2000 + i).capacity(100L + i).build();
+    }
+}